@@ -17,99 +17,152 @@ package com.google.sps.data;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
-import java.util.Date;
-import java.util.Optional;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
+import com.google.appengine.api.datastore.DatastoreService;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.FetchOptions;
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.KeyFactory;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
-import com.google.appengine.api.datastore.Query.Filter;
-import com.google.appengine.api.datastore.Query.FilterOperator;
 
+/**
+ * Accesses the data that Food-Mood keeps about its users, which is kept by a UserDataStore. The
+ * store that's used by default is chosen by the "foodmood.dataStore" system property:
+ * "datastore" (the default) for App Engine's datastore, "memory" for an in-memory store, or "log"
+ * for a log of files in the directory that the "foodmood.dataStore.dir" system property names.
+ * That store is shared by all the data accessors of the process.
+ */
 public class DataAccessor {
 
   @VisibleForTesting // Applies to all the following
-  static final String USER_ENTITY_KIND = "User";
-  static final String RECOMMENDATION_ENTITY_KIND = "Recommendation";
-  static final String PREFERNCES_ENTITY_KIND = "UserPreferences";
-  static final String USER_ID_PROPERTY = "UserId";
-  static final String PLACE_ID_PROPERTY = "PlaceId";
-  static final String CHOSEN_PROPERTY = "WasChosenByUser";
-  static final String TRY_AGAIN_PROPERTY = "UserTriedAgain";
-  static final String TIME_PROPERTY = "Time";
-
-  private final DatastoreService datastoreService;
+  static final String DATA_STORE_PROPERTY = "foodmood.dataStore";
+  static final String DATA_STORE_DIR_PROPERTY = "foodmood.dataStore.dir";
+
+  // The maximal number of user IDs kept in the cache of registered users.
+  private static final long MAX_NUM_OF_CACHED_REGISTERED_USERS = 100000;
+
+  private static final Supplier<UserDataStore> DEFAULT_DATA_STORE =
+      Suppliers.memoize(() -> createDataStore(System.getProperty(DATA_STORE_PROPERTY, "datastore"),
+          System.getProperty(DATA_STORE_DIR_PROPERTY)));
+
+  private final UserDataStore dataStore;
+
+  // The IDs of users that are known to be registered, so that repeated sign-ins of the same users
+  // don't access the store. Users are never unregistered, so a cached user never goes stale.
+  private final Cache<String, Boolean> registeredUsers =
+      CacheBuilder.newBuilder().maximumSize(MAX_NUM_OF_CACHED_REGISTERED_USERS).build();
   private static final String INVALID_USER_MSG = "User ID may not be null or empty";
-  private static final Filter CHOSEN_PLACE_FILTER =
-      new Query.FilterPredicate(CHOSEN_PROPERTY, FilterOperator.EQUAL, true);
 
   /**
-   * A constructor that creates a DatastoreService instance for the class.
+   * A constructor that uses the store that's configured by the system properties.
    */
   public DataAccessor() {
-    this.datastoreService = DatastoreServiceFactory.getDatastoreService();
+    this(DEFAULT_DATA_STORE.get());
+  }
+
+  /**
+   * @param dataStore the store that keeps the data
+   */
+  public DataAccessor(UserDataStore dataStore) {
+    this.dataStore = dataStore;
   }
 
   @VisibleForTesting
   DataAccessor(DatastoreService datastore) {
-    this.datastoreService = datastore;
+    this(new DatastoreUserDataStore(datastore));
+  }
+
+  @VisibleForTesting
+  static UserDataStore createDataStore(String type, String dir) {
+    switch (type) {
+      case "datastore":
+        return new DatastoreUserDataStore();
+      case "memory":
+        return new InMemoryUserDataStore();
+      case "log":
+        checkArgument(!isNullOrEmpty(dir), "%s must be set for a log store",
+            DATA_STORE_DIR_PROPERTY);
+        try {
+          return LogUserDataStore.open(Paths.get(dir));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      default:
+        throw new IllegalArgumentException("Unknown data store: " + type);
+    }
   }
 
   /**
   * @param userId the ID of the user that we want to check the registration status for
   * @return whether the user is registered to our system, by checking whether their ID was
-  *     previously added to datastore.
+  *     previously added to the store.
   */
   public boolean isRegistered(String userId) {
     checkArgument(!isNullOrEmpty(userId), INVALID_USER_MSG);
-    Key userIdKey = KeyFactory.createKey(USER_ENTITY_KIND, userId);
-    Filter userIdFilter =
-        new Query.FilterPredicate(Entity.KEY_RESERVED_PROPERTY, FilterOperator.EQUAL, userIdKey);
-    Query query = new Query(USER_ENTITY_KIND).setFilter(userIdFilter).setKeysOnly();
-    return datastoreService.prepare(query).countEntities(FetchOptions.Builder.withDefaults()) > 0;
+    if (registeredUsers.getIfPresent(userId) != null) {
+      return true;
+    }
+    if (!dataStore.isRegistered(userId)) {
+      return false;
+    }
+    registeredUsers.put(userId, true);
+    return true;
   }
 
   /**
-  * Registers the user in our system, by adding an entity that represents them to datastore.
+  * Registers the user in our system, by adding them to the store.
   *
   * @param userId the ID of the user that we want to register to our system
+  * @throws IllegalArgumentException if the user is already registered
   */
   public void registerUser(String userId) {
+    checkArgument(registerUserIfAbsent(userId), "User already registered.");
+  }
+
+  /**
+  * Registers the user in our system unless they're already registered. The check and the
+  * registration are atomic, so concurrent sign-ins of the same user register them only once.
+  *
+  * @param userId the ID of the user that we want to register to our system
+  * @return true if the user was registered now, and false if they were already registered.
+  */
+  public boolean registerUserIfAbsent(String userId) {
     checkArgument(!isNullOrEmpty(userId), INVALID_USER_MSG);
-    checkArgument(!isRegistered(userId), "User already registered.");
-    Entity userEntity = new Entity(USER_ENTITY_KIND, userId);
-    datastoreService.put(userEntity);
+    if (registeredUsers.getIfPresent(userId) != null) {
+      return false;
+    }
+    boolean registered = dataStore.registerUserIfAbsent(userId);
+    registeredUsers.put(userId, true);
+    return registered;
   }
 
   /**
-  * Updates the database with information from the user feedback. Each entity represents the
-  * relations between the user and a single place that was recommended to them. So for each user
-  * feedback, multiple entities are generated, to represent each place seperately.
+  * Updates the store with information from the user feedback, and adds its places to the
+  * user's history, which getPlacesRecommendedToUser reads.
   *
   * @param feedback a UserFeedback that holds all the information about the user feedback.
   */
   public void updateUserFeedback(UserFeedback feedback) {
-    for (String place : feedback.recommendedPlaces()) {
-      Entity recommendationEntity = new Entity(RECOMMENDATION_ENTITY_KIND);
-      recommendationEntity.setProperty(USER_ID_PROPERTY, feedback.userId());
-      recommendationEntity.setProperty(PLACE_ID_PROPERTY, place);
-      recommendationEntity.setProperty(CHOSEN_PROPERTY,
-          feedback.chosenPlace().equals(Optional.of(place)));
-      recommendationEntity.setProperty(TRY_AGAIN_PROPERTY, feedback.userTriedAgain());
-      recommendationEntity.setProperty(TIME_PROPERTY, feedback.feedbackTimeInMillis());
-      datastoreService.put(recommendationEntity);
-    }
+    dataStore.updateUserFeedback(feedback);
   }
 
   /**
-  * Queries the database and gets the places that were recommended to the user in the past.
-  * There is a possibility to get only places that the user chose, according to their feedback.
+  * Updates the store with information from a batch of feedbacks, as updateUserFeedback does for
+  * each of them.
+  *
+  * @param feedbacks the feedbacks to store.
+  */
+  public void updateUserFeedbacks(List<UserFeedback> feedbacks) {
+    dataStore.updateUserFeedbacks(feedbacks);
+  }
+
+  /**
+  * Gets the places that were recommended to the user in the past. There is a possibility to get
+  * only places that the user chose, according to their feedback.
   *
   * @param userId the user we want the information about.
   * @param getOnlyPlacesUserChose if this is true, the returned places would consist only of places
@@ -119,18 +172,7 @@ public class DataAccessor {
   public ImmutableList<String> getPlacesRecommendedToUser(String userId,
       boolean getOnlyPlacesUserChose) {
     checkArgument(!isNullOrEmpty(userId), INVALID_USER_MSG);
-    Filter userIdFilter =
-        new Query.FilterPredicate(USER_ID_PROPERTY, FilterOperator.EQUAL, userId);
-    Filter filter = getOnlyPlacesUserChose
-        ? CompositeFilterOperator.and(userIdFilter, CHOSEN_PLACE_FILTER)
-        : userIdFilter;
-    Query query = new Query(RECOMMENDATION_ENTITY_KIND).setFilter(filter);
-    return datastoreService.prepare(query)
-        .asList(FetchOptions.Builder.withDefaults())
-        .stream()
-        .map(entity -> (String) entity.getProperty(PLACE_ID_PROPERTY))
-        .distinct()
-        .collect(ImmutableList.toImmutableList());
+    return dataStore.getPlacesRecommendedToUser(userId, getOnlyPlacesUserChose);
   }
 
   /**
@@ -141,12 +183,6 @@ public class DataAccessor {
    */
   public void storeUserPreferences(String userId, UserPreferences userPreferences) {
     checkArgument(!isNullOrEmpty(userId), INVALID_USER_MSG);
-    if (!userPreferences.cuisines().isEmpty()) {
-      Entity prefsEntity = new Entity(PREFERNCES_ENTITY_KIND);
-      prefsEntity.setProperty("userId", userId);
-      prefsEntity.setProperty("date", new Date()); // TODO(Tal): Deal with try again sessions
-      prefsEntity.setProperty("preferedCuisines", userPreferences.cuisines());
-      datastoreService.put(prefsEntity);
-    }
+    dataStore.storeUserPreferences(userId, userPreferences);
   }
 }
@@ -0,0 +1,592 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.collect.Streams;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.PropertyProjection;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.Filter;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Transaction;
+
+/**
+ * A UserDataStore that keeps the data in App Engine's datastore. Besides the UserDataStore
+ * methods, it has the maintenance operations that convert data that was stored by its previous
+ * versions.
+ */
+public class DatastoreUserDataStore implements UserDataStore {
+
+  @VisibleForTesting // Applies to all the following
+  static final String USER_ENTITY_KIND = "User";
+  static final String RECOMMENDATION_ENTITY_KIND = "Recommendation";
+  static final String PREFERNCES_ENTITY_KIND = "UserPreferences";
+  static final String USER_ID_PROPERTY = "UserId";
+  static final String PLACE_ID_PROPERTY = "PlaceId";
+  static final String CHOSEN_PROPERTY = "WasChosenByUser";
+  static final String TRY_AGAIN_PROPERTY = "UserTriedAgain";
+  static final String TIME_PROPERTY = "Time";
+  static final String FEEDBACK_ENTITY_KIND = "Feedback";
+  static final String CHOSEN_INDEX_PROPERTY = "ChosenIndex";
+  static final String CHOSEN_PLACE_ID_PROPERTY = "ChosenPlaceId";
+  static final String MIGRATED_KEYS_PROPERTY = "MigratedKeys";
+  static final long NO_CHOSEN_INDEX = -1;
+  static final String USER_HISTORY_ENTITY_KIND = "UserHistory";
+  static final String RECOMMENDED_PLACE_IDS_PROPERTY = "RecommendedPlaceIds";
+  static final String CHOSEN_PLACE_IDS_PROPERTY = "ChosenPlaceIds";
+
+  // The number of times a transactional update of a user's history is attempted, in case of
+  // concurrent updates of the same user's history.
+  private static final int MAX_HISTORY_UPDATE_ATTEMPTS = 3;
+
+  // The maximal number of places in each list of a user's history, which keeps the history entity
+  // well below datastore's limit of 1 MB per entity. The least recent places are dropped first.
+  @VisibleForTesting
+  static final int MAX_HISTORY_SIZE = 5000;
+
+  // The number of place IDs fetched at a time by queries of users' recommendation histories.
+  private static final int DEFAULT_BATCH_SIZE = 500;
+
+  private final DatastoreService datastoreService;
+  private static final String INVALID_USER_MSG = "User ID may not be null or empty";
+  private static final Filter CHOSEN_PLACE_FILTER =
+      new Query.FilterPredicate(CHOSEN_PROPERTY, FilterOperator.EQUAL, true);
+
+  /**
+   * A constructor that creates a DatastoreService instance for the class.
+   */
+  public DatastoreUserDataStore() {
+    this(DatastoreServiceFactory.getDatastoreService());
+  }
+
+  @VisibleForTesting
+  DatastoreUserDataStore(DatastoreService datastore) {
+    this.datastoreService = datastore;
+  }
+
+  @Override
+  public boolean isRegistered(String userId) {
+    try {
+      datastoreService.get(KeyFactory.createKey(USER_ENTITY_KIND, userId));
+      return true;
+    } catch (EntityNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+  * Registers the user by adding an entity that represents them. The check and the registration
+  * are done in a single transaction.
+  */
+  @Override
+  public boolean registerUserIfAbsent(String userId) {
+    Key userKey = KeyFactory.createKey(USER_ENTITY_KIND, userId);
+    Transaction transaction = datastoreService.beginTransaction();
+    try {
+      datastoreService.get(transaction, userKey);
+      return false;
+    } catch (EntityNotFoundException e) {
+      datastoreService.put(transaction, new Entity(userKey));
+      transaction.commit();
+      return true;
+    } catch (ConcurrentModificationException e) {
+      // Another request registered the user while this transaction was running.
+      return false;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  /**
+  * Updates the database with information from the user feedback. The feedback is stored as a
+  * single entity, whose PlaceId property holds all the places that were recommended to the user,
+  * and whose ChosenIndex property holds the index of the place they chose among them, or -1 if
+  * they didn't choose any. The places are also added to the user's history entity, which
+  * getPlacesRecommendedToUser reads.
+  *
+  * @param feedback a UserFeedback that holds all the information about the user feedback.
+  */
+  @Override
+  public void updateUserFeedback(UserFeedback feedback) {
+    datastoreService.put(createFeedbackEntity(feedback));
+    addToUserHistory(
+        feedback.userId(),
+        feedback.recommendedPlaces(),
+        feedback.chosenPlace().map(ImmutableList::of).orElse(ImmutableList.of()),
+        /* areOldPlaces */ false);
+  }
+
+  /**
+  * Writes the feedback entities of all the feedbacks in a single batch, and then updates the
+  * history of each of their users once.
+  */
+  @Override
+  public void updateUserFeedbacks(List<UserFeedback> feedbacks) {
+    if (feedbacks.isEmpty()) {
+      return;
+    }
+    datastoreService.put(feedbacks.stream()
+        .map(DatastoreUserDataStore::createFeedbackEntity)
+        .collect(ImmutableList.toImmutableList()));
+    Map<String, List<String>> recommendedPlaces = new LinkedHashMap<>();
+    Map<String, List<String>> chosenPlaces = new HashMap<>();
+    for (UserFeedback feedback : feedbacks) {
+      recommendedPlaces.computeIfAbsent(feedback.userId(), user -> new ArrayList<>())
+          .addAll(feedback.recommendedPlaces());
+      feedback.chosenPlace().ifPresent(chosenPlace -> chosenPlaces
+          .computeIfAbsent(feedback.userId(), user -> new ArrayList<>())
+          .add(chosenPlace));
+    }
+    recommendedPlaces.forEach((userId, places) -> addToUserHistory(
+        userId, places, chosenPlaces.getOrDefault(userId, ImmutableList.of()),
+        /* areOldPlaces */ false));
+  }
+
+  /**
+  * Converts recommendation entities, of which an entity was stored for each recommended place,
+  * to feedback entities, of which a single entity is stored for each feedback. Recommendations
+  * of the same user that were stored at the same time belong to the same feedback. The
+  * recommendations are handled in pages, so that each call completes within a request's deadline,
+  * and are deleted once their feedback entities are written. Their places are also added to the
+  * users' histories.
+  *
+  * <p>A feedback entity's key is derived from its recommendations, and it records which of them it
+  * was built from. So the recommendations of a feedback may be split across pages, and pages that
+  * failed midway may be run again.
+  *
+  * @param startCursor the cursor returned by the previous call, or empty to start from the first
+  *     recommendation
+  * @param pageSize the number of recommendation entities to convert
+  * @return the cursor to continue from in the next call, or empty if all the recommendations
+  *     were converted.
+  */
+  public Optional<Cursor> migrateRecommendationsToFeedback(
+      Optional<Cursor> startCursor, int pageSize) {
+    checkArgument(pageSize > 0, "Page size must be positive");
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(pageSize);
+    startCursor.ifPresent(fetchOptions::startCursor);
+    QueryResultList<Entity> recommendations = datastoreService
+        .prepare(new Query(RECOMMENDATION_ENTITY_KIND))
+        .asQueryResultList(fetchOptions);
+    Map<Key, List<Entity>> recommendationsByFeedback = new LinkedHashMap<>();
+    for (Entity recommendation : recommendations) {
+      Key feedbackKey = KeyFactory.createKey(FEEDBACK_ENTITY_KIND, String.join("/",
+          (String) recommendation.getProperty(USER_ID_PROPERTY),
+          String.valueOf(recommendation.getProperty(TIME_PROPERTY)),
+          String.valueOf(recommendation.getProperty(TRY_AGAIN_PROPERTY))));
+      recommendationsByFeedback
+          .computeIfAbsent(feedbackKey, key -> new ArrayList<>())
+          .add(recommendation);
+    }
+    Map<Key, Entity> existingFeedbacks = datastoreService.get(recommendationsByFeedback.keySet());
+    List<Entity> feedbacks = new ArrayList<>();
+    recommendationsByFeedback.forEach((feedbackKey, feedbackRecommendations) -> feedbacks.add(
+        mergeRecommendations(
+            existingFeedbacks.getOrDefault(feedbackKey, new Entity(feedbackKey)),
+            feedbackRecommendations)));
+    if (!feedbacks.isEmpty()) {
+      datastoreService.put(feedbacks);
+      datastoreService.delete(
+          recommendations.stream().map(Entity::getKey).collect(ImmutableList.toImmutableList()));
+    }
+    for (Entity feedback : feedbacks) {
+      addToUserHistory(
+          (String) feedback.getProperty(USER_ID_PROPERTY),
+          getPlaceIds(feedback, PLACE_ID_PROPERTY),
+          getChosenPlace(feedback).map(ImmutableList::of).orElse(ImmutableList.of()),
+          /* areOldPlaces */ true);
+    }
+    return recommendations.size() < pageSize
+        ? Optional.empty()
+        : Optional.of(recommendations.getCursor());
+  }
+
+  // Adds the places of the recommendations that weren't merged into the feedback yet to its end.
+  private static Entity mergeRecommendations(Entity feedback, List<Entity> recommendations) {
+    List<String> placeIds = new ArrayList<>(getPlaceIds(feedback, PLACE_ID_PROPERTY));
+    List<Key> migratedKeys = new ArrayList<>(getMigratedKeys(feedback));
+    long chosenIndex = getChosenIndex(feedback);
+    for (Entity recommendation : recommendations) {
+      if (migratedKeys.contains(recommendation.getKey())) {
+        continue;
+      }
+      if (Boolean.TRUE.equals(recommendation.getProperty(CHOSEN_PROPERTY))) {
+        chosenIndex = placeIds.size();
+      }
+      placeIds.add((String) recommendation.getProperty(PLACE_ID_PROPERTY));
+      migratedKeys.add(recommendation.getKey());
+    }
+    Entity first = recommendations.get(0);
+    feedback.setProperty(USER_ID_PROPERTY, first.getProperty(USER_ID_PROPERTY));
+    feedback.setProperty(PLACE_ID_PROPERTY, placeIds);
+    feedback.setUnindexedProperty(CHOSEN_INDEX_PROPERTY, chosenIndex);
+    if (chosenIndex != NO_CHOSEN_INDEX) {
+      feedback.setProperty(CHOSEN_PLACE_ID_PROPERTY, placeIds.get((int) chosenIndex));
+    }
+    feedback.setProperty(TRY_AGAIN_PROPERTY, first.getProperty(TRY_AGAIN_PROPERTY));
+    feedback.setProperty(TIME_PROPERTY, first.getProperty(TIME_PROPERTY));
+    feedback.setUnindexedProperty(MIGRATED_KEYS_PROPERTY, migratedKeys);
+    return feedback;
+  }
+
+  /**
+  * Adds the places of existing recommendation entities to the histories of their users, which
+  * is needed once for the recommendations that were stored before users had history entities.
+  * The recommendations are handled in pages, so that each call completes within a request's
+  * deadline. Adding places that are already in a history has no effect, so pages can be run again.
+  *
+  * @param startCursor the cursor returned by the previous call, or empty to start from the first
+  *     recommendation
+  * @param pageSize the number of recommendation entities to handle
+  * @return the cursor to continue from in the next call, or empty if all the recommendations
+  *     were handled.
+  */
+  public Optional<Cursor> backfillUserHistories(Optional<Cursor> startCursor, int pageSize) {
+    checkArgument(pageSize > 0, "Page size must be positive");
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(pageSize);
+    startCursor.ifPresent(fetchOptions::startCursor);
+    QueryResultList<Entity> recommendations = datastoreService
+        .prepare(new Query(RECOMMENDATION_ENTITY_KIND))
+        .asQueryResultList(fetchOptions);
+    Map<String, List<String>> recommendedPlaces = new LinkedHashMap<>();
+    Map<String, List<String>> chosenPlaces = new HashMap<>();
+    for (Entity recommendation : recommendations) {
+      String userId = (String) recommendation.getProperty(USER_ID_PROPERTY);
+      String placeId = (String) recommendation.getProperty(PLACE_ID_PROPERTY);
+      recommendedPlaces.computeIfAbsent(userId, user -> new ArrayList<>()).add(placeId);
+      if (Boolean.TRUE.equals(recommendation.getProperty(CHOSEN_PROPERTY))) {
+        chosenPlaces.computeIfAbsent(userId, user -> new ArrayList<>()).add(placeId);
+      }
+    }
+    recommendedPlaces.forEach((userId, places) -> addToUserHistory(
+        userId, places, chosenPlaces.getOrDefault(userId, ImmutableList.of()),
+        /* areOldPlaces */ true));
+    return recommendations.size() < pageSize
+        ? Optional.empty()
+        : Optional.of(recommendations.getCursor());
+  }
+
+  // Adds places to the distinct places that were recommended to the user and that the user chose,
+  // which are kept in a single entity per user, in a transaction. Recent places are added as the
+  // most recent ones, and old places, of entities that were stored before users had histories, as
+  // the least recent ones. A history that doesn't exist yet starts with the user's most recent
+  // places, since getPlacesRecommendedToUser stops querying the user's entities once it exists.
+  //
+  // If the transaction keeps failing because of concurrent updates, the history is deleted rather
+  // than left without the places. It's then read by querying the user's entities, which include
+  // the places, and created again from them by the next update.
+  private void addToUserHistory(String userId, Collection<String> recommendedPlaces,
+      Collection<String> chosenPlaces, boolean areOldPlaces) {
+    Key historyKey = KeyFactory.createKey(USER_HISTORY_ENTITY_KIND, userId);
+    for (int attempt = 1; attempt <= MAX_HISTORY_UPDATE_ATTEMPTS; attempt++) {
+      Transaction transaction = datastoreService.beginTransaction();
+      try {
+        Entity history;
+        try {
+          history = datastoreService.get(transaction, historyKey);
+        } catch (EntityNotFoundException e) {
+          history = createUserHistory(historyKey, userId);
+        }
+        addPlaces(history, RECOMMENDED_PLACE_IDS_PROPERTY, recommendedPlaces, areOldPlaces);
+        addPlaces(history, CHOSEN_PLACE_IDS_PROPERTY, chosenPlaces, areOldPlaces);
+        datastoreService.put(transaction, history);
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        // Attempted again with the history that the concurrent update stored.
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+    datastoreService.delete(historyKey);
+  }
+
+  // Creates the history of a user who doesn't have one yet, with their most recent places. The
+  // user's feedback entities are children of the user's key, so they're read by an ancestor query,
+  // which is strongly consistent and includes feedbacks that were just stored. The entities that
+  // were stored before that are only queried if the history isn't full yet. They're no longer
+  // written by feedbacks, so querying them by the UserId property doesn't miss recent ones.
+  private Entity createUserHistory(Key historyKey, String userId) {
+    // The places of the feedbacks, from the most recent one.
+    Set<String> recommendedPlaces = new LinkedHashSet<>();
+    Set<String> chosenPlaces = new LinkedHashSet<>();
+    Query feedbacksQuery = new Query(FEEDBACK_ENTITY_KIND)
+        .setAncestor(KeyFactory.createKey(USER_ENTITY_KIND, userId))
+        .addSort(TIME_PROPERTY, SortDirection.DESCENDING);
+    for (Entity feedback : datastoreService.prepare(feedbacksQuery)
+        .asIterable(FetchOptions.Builder.withChunkSize(DEFAULT_BATCH_SIZE))) {
+      if (recommendedPlaces.size() >= MAX_HISTORY_SIZE) {
+        break;
+      }
+      addUpToMaxSize(recommendedPlaces, Lists.reverse(getPlaceIds(feedback, PLACE_ID_PROPERTY)));
+      addUpToMaxSize(chosenPlaces,
+          getChosenPlace(feedback).map(ImmutableList::of).orElse(ImmutableList.of()));
+    }
+    Entity history = new Entity(historyKey);
+    history.setUnindexedProperty(RECOMMENDED_PLACE_IDS_PROPERTY, withOldPlaces(
+        recommendedPlaces, userId, /* getOnlyPlacesUserChose */ false));
+    history.setUnindexedProperty(CHOSEN_PLACE_IDS_PROPERTY, withOldPlaces(
+        chosenPlaces, userId, /* getOnlyPlacesUserChose */ true));
+    return history;
+  }
+
+  // Returns the recent places, from the least recent one, preceded by the user's old places that
+  // still fit in the history.
+  private List<String> withOldPlaces(
+      Set<String> recentPlaces, String userId, boolean getOnlyPlacesUserChose) {
+    Set<String> places = new LinkedHashSet<>();
+    if (recentPlaces.size() < MAX_HISTORY_SIZE) {
+      Iterator<String> oldPlaces = streamPlacesRecommendedToUser(
+              userId, getOnlyPlacesUserChose, DEFAULT_BATCH_SIZE)
+          .filter(placeId -> !recentPlaces.contains(placeId))
+          .iterator();
+      while (oldPlaces.hasNext() && places.size() + recentPlaces.size() < MAX_HISTORY_SIZE) {
+        places.add(oldPlaces.next());
+      }
+    }
+    places.addAll(Lists.reverse(new ArrayList<>(recentPlaces)));
+    return new ArrayList<>(places);
+  }
+
+  // Adds the places to the set while it's smaller than the maximal size of a history.
+  private static void addUpToMaxSize(Set<String> places, List<String> placesToAdd) {
+    for (String place : placesToAdd) {
+      if (places.size() >= MAX_HISTORY_SIZE) {
+        return;
+      }
+      places.add(place);
+    }
+  }
+
+  // Adds the places to a list property of the history entity, which is ordered from the least
+  // recent place. Recent places are moved to its end, and old places that it doesn't contain yet
+  // are added to its start. The least recent places beyond the maximal size are dropped.
+  private static void addPlaces(
+      Entity history, String property, Collection<String> places, boolean areOldPlaces) {
+    List<String> existingPlaces = getPlaceIds(history, property);
+    Set<String> mergedPlaces = new LinkedHashSet<>();
+    if (areOldPlaces) {
+      mergedPlaces.addAll(places);
+      mergedPlaces.removeAll(existingPlaces);
+      mergedPlaces.addAll(existingPlaces);
+    } else {
+      mergedPlaces.addAll(existingPlaces);
+      mergedPlaces.removeAll(places);
+      mergedPlaces.addAll(places);
+    }
+    List<String> placesList = new ArrayList<>(mergedPlaces);
+    history.setUnindexedProperty(property, new ArrayList<>(placesList.subList(
+        Math.max(placesList.size() - MAX_HISTORY_SIZE, 0), placesList.size())));
+  }
+
+  // Returns the places of a list property of a history or a feedback entity. Datastore doesn't
+  // keep empty lists, so the property is missing when there are no places.
+  @SuppressWarnings("unchecked")
+  private static List<String> getPlaceIds(Entity history, String property) {
+    List<String> placeIds = (List<String>) history.getProperty(property);
+    return placeIds == null ? ImmutableList.of() : placeIds;
+  }
+
+  // Creates a single entity for the feedback, with all the places that were recommended to the
+  // user. The chosen place is kept by its index, and also by its ID, so that it can be projected.
+  // The entity is a child of the user's key, so that the user's feedbacks can be read by an
+  // ancestor query.
+  private static Entity createFeedbackEntity(UserFeedback feedback) {
+    Entity feedbackEntity = new Entity(
+        FEEDBACK_ENTITY_KIND, KeyFactory.createKey(USER_ENTITY_KIND, feedback.userId()));
+    feedbackEntity.setProperty(USER_ID_PROPERTY, feedback.userId());
+    feedbackEntity.setProperty(PLACE_ID_PROPERTY, feedback.recommendedPlaces());
+    feedbackEntity.setUnindexedProperty(CHOSEN_INDEX_PROPERTY,
+        feedback.chosenPlace()
+            .map(chosenPlace -> (long) feedback.recommendedPlaces().indexOf(chosenPlace))
+            .orElse(NO_CHOSEN_INDEX));
+    feedback.chosenPlace().ifPresent(chosenPlace ->
+        feedbackEntity.setProperty(CHOSEN_PLACE_ID_PROPERTY, chosenPlace));
+    feedbackEntity.setProperty(TRY_AGAIN_PROPERTY, feedback.userTriedAgain());
+    feedbackEntity.setProperty(TIME_PROPERTY, feedback.feedbackTimeInMillis());
+    return feedbackEntity;
+  }
+
+  // Returns the index of the chosen place among the places of a feedback entity, or -1 if the
+  // user didn't choose any of them.
+  private static long getChosenIndex(Entity feedback) {
+    Long chosenIndex = (Long) feedback.getProperty(CHOSEN_INDEX_PROPERTY);
+    return chosenIndex == null ? NO_CHOSEN_INDEX : chosenIndex;
+  }
+
+  private static Optional<String> getChosenPlace(Entity feedback) {
+    long chosenIndex = getChosenIndex(feedback);
+    List<String> placeIds = getPlaceIds(feedback, PLACE_ID_PROPERTY);
+    return chosenIndex >= 0 && chosenIndex < placeIds.size()
+        ? Optional.of(placeIds.get((int) chosenIndex))
+        : Optional.empty();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Key> getMigratedKeys(Entity feedback) {
+    List<Key> migratedKeys = (List<Key>) feedback.getProperty(MIGRATED_KEYS_PROPERTY);
+    return migratedKeys == null ? ImmutableList.of() : migratedKeys;
+  }
+
+  /**
+  * Queries the database and gets the places that were recommended to the user in the past.
+  * There is a possibility to get only places that the user chose, according to their feedback.
+  * Once the user has a history entity, the places are read from it, which keeps only the
+  * MAX_HISTORY_SIZE most recent places of each list.
+  *
+  * @param userId the user we want the information about.
+  * @param getOnlyPlacesUserChose if this is true, the returned places would consist only of places
+  *                               that the user chose, according to their feedback.
+  * @return the IDs of the places that the user received recommendations about in the past.
+  */
+  @Override
+  public ImmutableList<String> getPlacesRecommendedToUser(String userId,
+      boolean getOnlyPlacesUserChose) {
+    try {
+      Entity history = datastoreService.get(KeyFactory.createKey(USER_HISTORY_ENTITY_KIND, userId));
+      return ImmutableList.copyOf(getPlaceIds(
+          history,
+          getOnlyPlacesUserChose ? CHOSEN_PLACE_IDS_PROPERTY : RECOMMENDED_PLACE_IDS_PROPERTY));
+    } catch (EntityNotFoundException e) {
+      // The user's recommendations weren't added to a history yet, so they're queried.
+    }
+    return streamPlacesRecommendedToUser(userId, getOnlyPlacesUserChose, DEFAULT_BATCH_SIZE)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /**
+   * Streams the places that were recommended to the user in the past, by querying both their
+   * recommendation entities and their feedback entities, of which the latter replaced the former.
+   * Each query projects the distinct place IDs in ascending order, and the two are merged as they
+   * are consumed, so the places are streamed in ascending order of their IDs. Places are fetched
+   * in batches, so the memory used doesn't depend on the length of the user's history. This
+   * requires the indexes defined in WEB-INF/datastore-indexes.xml.
+   *
+   * @param userId the user we want the information about.
+   * @param getOnlyPlacesUserChose if this is true, the returned places would consist only of places
+   *                               that the user chose, according to their feedback.
+   * @param batchSize the number of entities fetched from datastore at a time.
+   * @return the IDs of the places that the user received recommendations about in the past.
+   */
+  public Stream<String> streamPlacesRecommendedToUser(String userId,
+      boolean getOnlyPlacesUserChose, int batchSize) {
+    checkArgument(!isNullOrEmpty(userId), INVALID_USER_MSG);
+    checkArgument(batchSize > 0, "Batch size must be positive");
+    Filter userIdFilter =
+        new Query.FilterPredicate(USER_ID_PROPERTY, FilterOperator.EQUAL, userId);
+    FetchOptions fetchOptions =
+        FetchOptions.Builder.withChunkSize(batchSize).prefetchSize(batchSize);
+    Iterator<String> recommendedPlaces = queryDistinctPlaceIds(
+        new Query(RECOMMENDATION_ENTITY_KIND).setFilter(getOnlyPlacesUserChose
+            ? CompositeFilterOperator.and(userIdFilter, CHOSEN_PLACE_FILTER)
+            : userIdFilter),
+        PLACE_ID_PROPERTY,
+        fetchOptions);
+    Iterator<String> feedbackPlaces = queryDistinctPlaceIds(
+        new Query(FEEDBACK_ENTITY_KIND).setFilter(userIdFilter),
+        getOnlyPlacesUserChose ? CHOSEN_PLACE_ID_PROPERTY : PLACE_ID_PROPERTY,
+        fetchOptions);
+    // Both iterators are in ascending order, so a place that both of them have is merged into
+    // consecutive elements, of which only the first is kept.
+    PeekingIterator<String> mergedPlaces = Iterators.peekingIterator(Iterators.mergeSorted(
+        ImmutableList.of(recommendedPlaces, feedbackPlaces), Comparator.naturalOrder()));
+    return Streams.stream(new AbstractIterator<String>() {
+      @Override
+      protected String computeNext() {
+        if (!mergedPlaces.hasNext()) {
+          return endOfData();
+        }
+        String placeId = mergedPlaces.next();
+        while (mergedPlaces.hasNext() && mergedPlaces.peek().equals(placeId)) {
+          mergedPlaces.next();
+        }
+        return placeId;
+      }
+    });
+  }
+
+  // Returns the distinct values of a place ID property of the query's entities, in ascending
+  // order, which are fetched in batches as the iterator is consumed. The iterator continues from
+  // the cursor of the previous batch whenever it runs out of results.
+  private Iterator<String> queryDistinctPlaceIds(
+      Query query, String property, FetchOptions fetchOptions) {
+    query
+        .addProjection(new PropertyProjection(property, String.class))
+        .addSort(property)
+        .setDistinct(true);
+    QueryResultIterator<Entity> entities =
+        datastoreService.prepare(query).asQueryResultIterator(fetchOptions);
+    // Feedbacks without places are stored with an empty list, which datastore keeps as null.
+    return Iterators.filter(
+        Iterators.transform(entities, entity -> (String) entity.getProperty(property)),
+        Objects::nonNull);
+  }
+
+  /**
+   * Stores the UserPreferences in the personalized user database.
+   *
+   * @param userId The ID of the user to store the preferred cuisines for.
+   * @param userPreferences The user choices on the query form to store in the user’s database.
+   */
+  @Override
+  public void storeUserPreferences(String userId, UserPreferences userPreferences) {
+    if (!userPreferences.cuisines().isEmpty()) {
+      Entity prefsEntity = new Entity(PREFERNCES_ENTITY_KIND);
+      prefsEntity.setProperty("userId", userId);
+      prefsEntity.setProperty("date", new Date()); // TODO(Tal): Deal with try again sessions
+      prefsEntity.setProperty("preferedCuisines", userPreferences.cuisines());
+      datastoreService.put(prefsEntity);
+    }
+  }
+}
@@ -0,0 +1,221 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.maps.model.LatLng;
+
+/**
+ * A size bounded cache of the driving durations from places to users' locations. Durations are
+ * keyed by the cell of the grid that contains the user's location, and by the time of day, since
+ * traffic makes the same drive take longer at some hours. Since the cell fixes the time zone, the
+ * time of day is taken in UTC.
+ */
+public final class DurationCache {
+
+    // The default maximal number of durations kept in the cache.
+    private static final long DEFAULT_MAX_NUM_OF_DURATIONS = 100000;
+
+    // The default time after which cached durations expire. A day lets a duration be reused at the
+    // same hour on the next day.
+    private static final Duration DEFAULT_TTL = Duration.ofDays(1);
+
+    // The default size of the grid cells that users' locations are keyed by, in meters.
+    private static final double DEFAULT_CELL_SIZE_M = 500;
+
+    // The default length of the time of day buckets.
+    private static final Duration DEFAULT_TIME_BUCKET = Duration.ofHours(1);
+
+    private final Cache<DurationKey, CachedDuration> cache;
+
+    // The size of the grid cells that users' locations are keyed by, in meters.
+    private final double cellSizeMeters;
+
+    // The length of the time of day buckets, in milliseconds.
+    private final long timeBucketMillis;
+
+    // The time source used for expiring entries and measuring their age.
+    private final Ticker ticker;
+
+    // The wall clock used for finding the time of day.
+    private final Clock clock;
+
+    // The number of lookups that hit the cache.
+    private final AtomicLong hits = new AtomicLong();
+
+    // The total age of the durations returned by the cache, in nanoseconds.
+    private final AtomicLong hitsAgeNanos = new AtomicLong();
+
+    // The age of the oldest duration returned by the cache, in nanoseconds.
+    private final AtomicLong maxHitAgeNanos = new AtomicLong();
+
+    /**
+     * @return a DurationCache with the default size, expiration time, cell size and time buckets.
+     */
+    public static DurationCache create() {
+        return create(
+            DEFAULT_MAX_NUM_OF_DURATIONS, DEFAULT_TTL, DEFAULT_CELL_SIZE_M, DEFAULT_TIME_BUCKET);
+    }
+
+    /**
+     * @param maxNumOfDurations the maximal number of durations kept in the cache
+     * @param ttl the time after which cached durations expire
+     * @param cellSizeMeters the size of the grid cells that users' locations are keyed by, in
+     *     meters
+     * @param timeBucket the length of the time of day buckets that durations are keyed by
+     * @return a DurationCache with the given size, expiration time, cell size and time buckets
+     */
+    public static DurationCache create(
+            long maxNumOfDurations, Duration ttl, double cellSizeMeters, Duration timeBucket) {
+        return new DurationCache(
+            maxNumOfDurations,
+            ttl,
+            cellSizeMeters,
+            timeBucket,
+            Ticker.systemTicker(),
+            Clock.systemUTC());
+    }
+
+    /**
+     * @return a DurationCache that doesn't keep any duration, so that every lookup is a miss.
+     */
+    public static DurationCache disabled() {
+        return create(
+            0 /* maxNumOfDurations */, DEFAULT_TTL, DEFAULT_CELL_SIZE_M, DEFAULT_TIME_BUCKET);
+    }
+
+    /**
+     * DurationCache constructor used for tests.
+     *
+     * @param maxNumOfDurations the maximal number of durations kept in the cache
+     * @param ttl the time after which cached durations expire
+     * @param cellSizeMeters the size of the grid cells that users' locations are keyed by, in
+     *     meters
+     * @param timeBucket the length of the time of day buckets that durations are keyed by
+     * @param ticker the time source used for expiring entries and measuring their age
+     * @param clock the wall clock used for finding the time of day
+     */
+    @VisibleForTesting
+    DurationCache(
+            long maxNumOfDurations,
+            Duration ttl,
+            double cellSizeMeters,
+            Duration timeBucket,
+            Ticker ticker,
+            Clock clock) {
+        checkArgument(!timeBucket.isNegative() && !timeBucket.isZero(),
+            "Time bucket must be positive");
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(maxNumOfDurations)
+            .expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+            .ticker(ticker)
+            .recordStats()
+            .build();
+        this.cellSizeMeters = cellSizeMeters;
+        this.timeBucketMillis = timeBucket.toMillis();
+        this.ticker = ticker;
+        this.clock = clock;
+    }
+
+    /**
+     * @param placeId the ID of the place the drive starts from
+     * @param userLocation the location of the user the drive ends at
+     * @return the cached duration in seconds of the drive at the current time of day, or an empty
+     *     Optional if it isn't cached
+     */
+    public Optional<Long> getIfPresent(String placeId, LatLng userLocation) {
+        CachedDuration cached = cache.getIfPresent(createKey(placeId, userLocation));
+        if (cached == null) {
+            return Optional.empty();
+        }
+        long ageNanos = ticker.read() - cached.writeNanos();
+        hits.incrementAndGet();
+        hitsAgeNanos.addAndGet(ageNanos);
+        maxHitAgeNanos.accumulateAndGet(ageNanos, Math::max);
+        return Optional.of(cached.seconds());
+    }
+
+    /**
+     * Caches the duration of a drive at the current time of day.
+     *
+     * @param placeId the ID of the place the drive starts from
+     * @param userLocation the location of the user the drive ends at
+     * @param seconds the duration of the drive, in seconds
+     */
+    public void put(String placeId, LatLng userLocation, long seconds) {
+        cache.put(
+            createKey(placeId, userLocation),
+            new AutoValue_DurationCache_CachedDuration(seconds, ticker.read()));
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the cache, including its hit rate.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the average age of the durations that the cache returned, which is how stale the
+     *     durations used for scoring are.
+     */
+    public Duration averageHitAge() {
+        long numOfHits = hits.get();
+        return numOfHits == 0 ? Duration.ZERO : Duration.ofNanos(hitsAgeNanos.get() / numOfHits);
+    }
+
+    /**
+     * @return the age of the oldest duration that the cache returned.
+     */
+    public Duration maxHitAge() {
+        return Duration.ofNanos(maxHitAgeNanos.get());
+    }
+
+    private DurationKey createKey(String placeId, LatLng userLocation) {
+        long millisOfDay = clock.millis() % Duration.ofDays(1).toMillis();
+        return new AutoValue_DurationCache_DurationKey(
+            placeId, GeoCell.of(userLocation, cellSizeMeters), millisOfDay / timeBucketMillis);
+    }
+
+    /** The parameters that determine the duration of a drive. */
+    @AutoValue
+    abstract static class DurationKey {
+        abstract String placeId();
+
+        abstract GeoCell userCell();
+
+        abstract long timeBucket();
+    }
+
+    /** A cached duration, along with the time it was cached at. */
+    @AutoValue
+    abstract static class CachedDuration {
+        abstract long seconds();
+
+        abstract long writeNanos();
+    }
+}
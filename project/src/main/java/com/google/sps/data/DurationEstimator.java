@@ -0,0 +1,178 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.maps.model.LatLng;
+
+/**
+ * Estimates driving durations from the great-circle distance between two locations, so that the
+ * search results can be ranked before the places' details are fetched, and the durations of the
+ * top K places are prefetched from the Distance Matrix API meanwhile. Since driving speeds differ
+ * between areas, the estimation is configured per region.
+ */
+public final class DurationEstimator {
+
+    // The default number of places whose durations are prefetched from the Distance Matrix API.
+    private static final int DEFAULT_TOP_K = 5;
+
+    // The default average driving speed, in kilometers per hour, typical to city driving.
+    private static final double DEFAULT_SPEED_KMH = 30;
+
+    // The default ratio between the driving distance and the great-circle distance.
+    private static final double DEFAULT_DETOUR_FACTOR = 1.3;
+
+    // The configuration used outside of all the regions.
+    private final Config defaultConfig;
+
+    // The regions that have their own configuration, the first region that contains a location
+    // determines its configuration.
+    private final ImmutableList<Region> regions;
+
+    private DurationEstimator(Config defaultConfig, ImmutableList<Region> regions) {
+        this.defaultConfig = defaultConfig;
+        this.regions = regions;
+    }
+
+    /**
+     * @return a DurationEstimator with the default configuration everywhere.
+     */
+    public static DurationEstimator create() {
+        return create(
+            Config.create(DEFAULT_TOP_K, DEFAULT_SPEED_KMH, DEFAULT_DETOUR_FACTOR),
+            ImmutableList.of());
+    }
+
+    /**
+     * @param defaultConfig the configuration used outside of all the regions
+     * @param regions the regions that have their own configuration, the first region that
+     *     contains a location determines its configuration
+     * @return a DurationEstimator with the given configurations
+     */
+    public static DurationEstimator create(Config defaultConfig, ImmutableList<Region> regions) {
+        return new DurationEstimator(defaultConfig, regions);
+    }
+
+    /**
+     * @return a DurationEstimator that lets every place that has a location have its duration
+     *     prefetched from the Distance Matrix API.
+     */
+    public static DurationEstimator exact() {
+        return create(
+            Config.create(Integer.MAX_VALUE, DEFAULT_SPEED_KMH, DEFAULT_DETOUR_FACTOR),
+            ImmutableList.of());
+    }
+
+    /**
+     * @param userLocation the location of the user
+     * @return the configuration of the first region that contains the user's location, or the
+     *     default configuration if no region contains it
+     */
+    public Config configFor(LatLng userLocation) {
+        return regions.stream()
+            .filter(region -> region.contains(userLocation))
+            .map(Region::config)
+            .findFirst()
+            .orElse(defaultConfig);
+    }
+
+    /**
+     * @param from the location the drive starts at
+     * @param to the location the drive ends at
+     * @return the estimated duration of the drive in seconds, according to the configuration of
+     *     the region of its destination
+     */
+    public long estimateSeconds(LatLng from, LatLng to) {
+        Config config = configFor(to);
+        double drivingMeters = GeoUtils.distanceMeters(from, to) * config.detourFactor();
+        return Math.round(drivingMeters / (config.speedKmh() / 3.6));
+    }
+
+    /** The configuration of the estimation in a region. */
+    @AutoValue
+    public abstract static class Config {
+
+        /**
+         * @return the number of places, ranked by their estimated scores, whose durations are
+         *     prefetched from the Distance Matrix API.
+         */
+        public abstract int topK();
+
+        /**
+         * @return the average driving speed, in kilometers per hour.
+         */
+        public abstract double speedKmh();
+
+        /**
+         * @return the ratio between the driving distance and the great-circle distance.
+         */
+        public abstract double detourFactor();
+
+        /**
+         * @param topK the number of places whose durations are prefetched from the Distance
+         *     Matrix API
+         * @param speedKmh the average driving speed, in kilometers per hour
+         * @param detourFactor the ratio between the driving distance and the great-circle
+         *     distance, at least 1
+         * @return a new Config
+         */
+        public static Config create(int topK, double speedKmh, double detourFactor) {
+            checkArgument(topK > 0, "Top K must be positive");
+            checkArgument(speedKmh > 0, "Speed must be positive");
+            checkArgument(detourFactor >= 1, "Detour factor must be at least 1");
+            return new AutoValue_DurationEstimator_Config(topK, speedKmh, detourFactor);
+        }
+    }
+
+    /** A rectangular region that has its own configuration. */
+    @AutoValue
+    public abstract static class Region {
+
+        /**
+         * @return the south-west corner of the region.
+         */
+        public abstract LatLng southwest();
+
+        /**
+         * @return the north-east corner of the region.
+         */
+        public abstract LatLng northeast();
+
+        /**
+         * @return the configuration of the estimation in the region.
+         */
+        public abstract Config config();
+
+        /**
+         * @param southwest the south-west corner of the region
+         * @param northeast the north-east corner of the region
+         * @param config the configuration of the estimation in the region
+         * @return a new Region
+         */
+        public static Region create(LatLng southwest, LatLng northeast, Config config) {
+            checkArgument(southwest.lat <= northeast.lat && southwest.lng <= northeast.lng,
+                "The south-west corner must be south and west of the north-east corner");
+            return new AutoValue_DurationEstimator_Region(southwest, northeast, config);
+        }
+
+        boolean contains(LatLng location) {
+            return location.lat >= southwest().lat && location.lat <= northeast().lat
+                && location.lng >= southwest().lng && location.lng <= northeast().lng;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A queue of feedbacks that are written to the store in batches by a background thread, so that
+ * feedback requests don't wait for the store. A batch is written once it has the maximal number
+ * of feedbacks, or once its first feedback waited for the maximal delay.
+ *
+ * <p>The queue is bounded. Feedbacks that don't fit in it, and batches whose writes fail, are
+ * spilled to a local append-only file instead. Spilled feedbacks are written by the background
+ * thread when the queue is idle, and when the process starts again.
+ *
+ * <p>Its durability mode decides when feedbacks are written:
+ * <ul>
+ *   <li>WRITE_THROUGH writes each feedback before submit returns, as if there was no queue. No
+ *       background thread is started and no spill file is used, so feedbacks that were spilled
+ *       by a WRITE_BEHIND queue before are left in the spill file.
+ *   <li>WRITE_BEHIND writes it later. A feedback that's still in memory when the process crashes
+ *       is lost, but a spilled one isn't.
+ * </ul>
+ *
+ * <p>The default queue of the process is configured by the "foodmood.feedbackQueue.durability"
+ * system property (WRITE_THROUGH by default) and the "foodmood.feedbackQueue.spillFile" system
+ * property (foodmood-feedback.spill in the temporary directory by default).
+ *
+ * <p>WRITE_BEHIND is only meant for servers whose threads can reach the store outside of requests,
+ * and whose disk outlives the process. On App Engine standard, neither holds: a thread that isn't
+ * tied to a request has no API environment, so it can't write to Datastore, and the spill file is
+ * local to the instance, so it's lost when the instance is shut down.
+ */
+public class FeedbackQueue implements Closeable {
+
+  /** The modes of deciding when feedbacks are written to the store. */
+  public enum Durability {
+    /** Each feedback is written to the store before it's acknowledged. */
+    WRITE_THROUGH,
+    /** Feedbacks are written to the store in batches, after they're acknowledged. */
+    WRITE_BEHIND
+  }
+
+  @VisibleForTesting // Applies to all the following
+  static final String DURABILITY_PROPERTY = "foodmood.feedbackQueue.durability";
+  static final String SPILL_FILE_PROPERTY = "foodmood.feedbackQueue.spillFile";
+  static final String FLUSHER_THREAD_NAME = "feedback-queue-flusher";
+  static final int DEFAULT_CAPACITY = 10000;
+  static final int DEFAULT_MAX_BATCH_SIZE = 500;
+  static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 1000;
+
+  // The longest time that the flusher waits for a feedback before it checks whether the batch is
+  // due, whether the queue was closed, and whether feedbacks were spilled.
+  private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+  private static final Supplier<FeedbackQueue> DEFAULT_QUEUE = Suppliers.memoize(() -> {
+    try {
+      FeedbackQueue queue = new FeedbackQueue(
+          new DataAccessor(),
+          Paths.get(System.getProperty(SPILL_FILE_PROPERTY,
+              Paths.get(System.getProperty("java.io.tmpdir"), "foodmood-feedback.spill")
+                  .toString())),
+          Durability.valueOf(System.getProperty(DURABILITY_PROPERTY, "WRITE_THROUGH")),
+          DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY_MILLIS);
+      Runtime.getRuntime().addShutdownHook(new Thread(queue::close));
+      return queue;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  });
+
+  private final DataAccessor dataAccessor;
+  // The spill file and the flusher are null in WRITE_THROUGH mode.
+  private final FeedbackSpillFile spillFile;
+  private final Durability durability;
+  private final BlockingQueue<UserFeedback> queue;
+  private final int maxBatchSize;
+  private final long maxBatchDelayNanos;
+  private final Thread flusher;
+  private volatile boolean closed;
+  // The earliest time at which the flusher writes the spilled feedbacks again.
+  private long nextSpilledFlushNanos = System.nanoTime();
+
+  private final AtomicLong numOfFlushes = new AtomicLong();
+  private final AtomicLong numOfFailedFlushes = new AtomicLong();
+  private final AtomicLong numOfFlushedFeedbacks = new AtomicLong();
+  private final AtomicLong numOfSpilledFeedbacks = new AtomicLong();
+  private final AtomicLong numOfDroppedFeedbacks = new AtomicLong();
+  private final AtomicLong lastFlushLatencyNanos = new AtomicLong();
+  private final AtomicLong maxFlushLatencyNanos = new AtomicLong();
+
+  /**
+   * @return the queue of the process, which is configured by the system properties and is
+   *     closed when the process shuts down
+   */
+  public static FeedbackQueue getDefault() {
+    return DEFAULT_QUEUE.get();
+  }
+
+  @VisibleForTesting
+  FeedbackQueue(DataAccessor dataAccessor, Path spillFile, Durability durability, int capacity,
+      int maxBatchSize, long maxBatchDelayMillis) throws IOException {
+    checkArgument(capacity > 0 && maxBatchSize > 0 && maxBatchDelayMillis > 0,
+        "Capacity, batch size and batch delay must be positive");
+    this.dataAccessor = dataAccessor;
+    this.durability = durability;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMillis);
+    if (durability == Durability.WRITE_THROUGH) {
+      this.spillFile = null;
+      this.flusher = null;
+      return;
+    }
+    this.spillFile = new FeedbackSpillFile(spillFile);
+    this.flusher = new Thread(this::runFlusher, FLUSHER_THREAD_NAME);
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  /**
+   * Submits the feedback to be written to the store, according to the durability mode.
+   *
+   * @param feedback the feedback to write
+   * @throws IllegalStateException if the queue is closed
+   * @throws UncheckedIOException if the feedback had to be spilled, and spilling it failed
+   */
+  public void submit(UserFeedback feedback) {
+    checkState(!closed, "The feedback queue is closed");
+    if (durability == Durability.WRITE_THROUGH) {
+      dataAccessor.updateUserFeedback(feedback);
+    } else if (!queue.offer(feedback)) {
+      spill(ImmutableList.of(feedback));
+    }
+  }
+
+  /**
+   * @return the current statistics of the queue
+   */
+  public Stats stats() {
+    return Stats.create(
+        durability,
+        queue.size(),
+        numOfFlushes.get(),
+        numOfFailedFlushes.get(),
+        numOfFlushedFeedbacks.get(),
+        numOfSpilledFeedbacks.get(),
+        numOfDroppedFeedbacks.get(),
+        TimeUnit.NANOSECONDS.toMillis(lastFlushLatencyNanos.get()),
+        TimeUnit.NANOSECONDS.toMillis(maxFlushLatencyNanos.get()));
+  }
+
+  /**
+   * Stops accepting feedbacks, and waits for the queued ones to be written or spilled.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (flusher == null) {
+      return;
+    }
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // Feedbacks that were submitted while the queue was closing.
+    List<UserFeedback> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    flushOrDrop(remaining);
+  }
+
+  private void runFlusher() {
+    flushSpilled();
+    List<UserFeedback> batch = new ArrayList<>(maxBatchSize);
+    long batchDeadline = 0;
+    while (!closed || !queue.isEmpty()) {
+      UserFeedback next;
+      try {
+        next = queue.poll(POLL_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        // Only the queue runs the flusher, and it never interrupts it.
+        continue;
+      }
+      if (next != null) {
+        if (batch.isEmpty()) {
+          batchDeadline = System.nanoTime() + maxBatchDelayNanos;
+        }
+        batch.add(next);
+      }
+      if (batch.size() >= maxBatchSize
+          || (!batch.isEmpty() && (closed || System.nanoTime() - batchDeadline >= 0))) {
+        // The batch is copied, since it's reused for the next batch.
+        flushOrDrop(ImmutableList.copyOf(batch));
+        batch.clear();
+      } else if (batch.isEmpty() && next == null) {
+        flushSpilled();
+      }
+    }
+  }
+
+  // Writes the spilled feedbacks in batches, at most once per batch delay, so that a failing store
+  // isn't retried constantly. Those that fail are spilled again. If a batch can't be spilled again
+  // either, it and the following batches are kept in the taken file, to be taken again when the
+  // queue is idle again.
+  private void flushSpilled() {
+    if (System.nanoTime() - nextSpilledFlushNanos < 0) {
+      return;
+    }
+    nextSpilledFlushNanos = System.nanoTime() + maxBatchDelayNanos;
+    try {
+      ImmutableList<UserFeedback> spilled = spillFile.take();
+      for (int start = 0; start < spilled.size(); start += maxBatchSize) {
+        if (!flush(spilled.subList(start, Math.min(start + maxBatchSize, spilled.size())))) {
+          spillFile.retain(spilled.subList(start, spilled.size()));
+          return;
+        }
+      }
+      spillFile.release();
+    } catch (IOException e) {
+      // The taken file is kept as it is, so its feedbacks that were already handled are written
+      // again when it's taken again.
+    }
+  }
+
+  private void flushOrDrop(List<UserFeedback> batch) {
+    if (!flush(batch)) {
+      numOfDroppedFeedbacks.addAndGet(batch.size());
+    }
+  }
+
+  // Writes the batch, or spills it if writing it fails. Returns false if spilling it failed too.
+  private boolean flush(List<UserFeedback> batch) {
+    if (batch.isEmpty()) {
+      return true;
+    }
+    long start = System.nanoTime();
+    try {
+      dataAccessor.updateUserFeedbacks(batch);
+      numOfFlushedFeedbacks.addAndGet(batch.size());
+      return true;
+    } catch (RuntimeException e) {
+      numOfFailedFlushes.incrementAndGet();
+      try {
+        spill(batch);
+        return true;
+      } catch (UncheckedIOException spillException) {
+        return false;
+      }
+    } finally {
+      long latency = System.nanoTime() - start;
+      numOfFlushes.incrementAndGet();
+      lastFlushLatencyNanos.set(latency);
+      maxFlushLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+  }
+
+  private void spill(List<UserFeedback> feedbacks) {
+    try {
+      spillFile.append(feedbacks);
+      numOfSpilledFeedbacks.addAndGet(feedbacks.size());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** A snapshot of the statistics of a feedback queue. */
+  @AutoValue
+  public abstract static class Stats {
+    /** @return a new snapshot, whose values are in the order of their accessors. */
+    public static Stats create(Durability durability, int queueDepth, long numOfFlushes,
+        long numOfFailedFlushes, long numOfFlushedFeedbacks, long numOfSpilledFeedbacks,
+        long numOfDroppedFeedbacks, long lastFlushLatencyMillis, long maxFlushLatencyMillis) {
+      return new AutoValue_FeedbackQueue_Stats(durability, queueDepth, numOfFlushes,
+          numOfFailedFlushes, numOfFlushedFeedbacks, numOfSpilledFeedbacks, numOfDroppedFeedbacks,
+          lastFlushLatencyMillis, maxFlushLatencyMillis);
+    }
+
+    /** @return the durability mode of the queue. */
+    public abstract Durability durability();
+
+    /** @return the number of feedbacks in the queue. */
+    public abstract int queueDepth();
+
+    /** @return the number of batches that were written, or failed to be written. */
+    public abstract long numOfFlushes();
+
+    /** @return the number of batches that failed to be written, and were spilled. */
+    public abstract long numOfFailedFlushes();
+
+    /** @return the number of feedbacks that were written to the store. */
+    public abstract long numOfFlushedFeedbacks();
+
+    /** @return the number of feedbacks that were spilled to the local file. */
+    public abstract long numOfSpilledFeedbacks();
+
+    /** @return the number of feedbacks that failed to be written and to be spilled. */
+    public abstract long numOfDroppedFeedbacks();
+
+    /** @return the time it took to write the last batch, in milliseconds. */
+    public abstract long lastFlushLatencyMillis();
+
+    /** @return the longest time it took to write a batch, in milliseconds. */
+    public abstract long maxFlushLatencyMillis();
+  }
+}
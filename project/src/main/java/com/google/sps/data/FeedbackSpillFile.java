@@ -0,0 +1,134 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A local append-only file of feedbacks that FeedbackQueue couldn't write to the store, either
+ * because it was full or because writing them failed. Feedbacks are framed like the records of
+ * LogUserDataStore, and each append is forced to the disk before it returns.
+ *
+ * <p>The spilled feedbacks are taken by moving the file aside, so feedbacks can be spilled while
+ * the taken ones are written. The moved file is only deleted once they were handled, so if the
+ * process crashes while they're written, they're taken again when it restarts.
+ */
+final class FeedbackSpillFile {
+
+  private final Path file;
+  private final Path takenFile;
+
+  FeedbackSpillFile(Path file) throws IOException {
+    this.file = file;
+    this.takenFile = Paths.get(file + ".taken");
+    Path dir = file.toAbsolutePath().getParent();
+    if (dir != null) {
+      Files.createDirectories(dir);
+    }
+  }
+
+  /**
+   * Appends the feedbacks to the file, and forces them to the disk.
+   */
+  synchronized void append(List<UserFeedback> feedbacks) throws IOException {
+    write(file, feedbacks, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Takes the spilled feedbacks, including those that were taken before a crash and not
+   * released. A torn last feedback, whose append was interrupted by a crash, is dropped.
+   *
+   * @return the spilled feedbacks, in the order they were spilled
+   */
+  synchronized ImmutableList<UserFeedback> take() throws IOException {
+    if (!Files.exists(takenFile)) {
+      if (!Files.exists(file) || Files.size(file) == 0) {
+        return ImmutableList.of();
+      }
+      Files.move(file, takenFile);
+    }
+    ImmutableList.Builder<UserFeedback> feedbacks = ImmutableList.builder();
+    ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(takenFile));
+    while (records.remaining() >= LogUserDataStore.HEADER_SIZE) {
+      int length = records.getInt();
+      int checksum = records.getInt();
+      if (length <= 0 || length > records.remaining()) {
+        break;
+      }
+      byte[] contents = new byte[length];
+      records.get(contents);
+      if (LogUserDataStore.checksum(contents) != checksum) {
+        break;
+      }
+      feedbacks.add(LogUserDataStore.readFeedback(
+          new DataInputStream(new ByteArrayInputStream(contents))));
+    }
+    return feedbacks.build();
+  }
+
+  /**
+   * Deletes the feedbacks that were taken, once they were written or spilled again.
+   */
+  synchronized void release() throws IOException {
+    Files.deleteIfExists(takenFile);
+  }
+
+  /**
+   * Replaces the feedbacks that were taken with the given ones, once the others were written or
+   * spilled again, so that only the given ones are taken again.
+   */
+  synchronized void retain(List<UserFeedback> feedbacks) throws IOException {
+    Path retainedFile = Paths.get(takenFile + ".tmp");
+    write(retainedFile, feedbacks, StandardOpenOption.TRUNCATE_EXISTING);
+    Files.move(retainedFile, takenFile,
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // Writes the feedbacks to the file in the given mode, and forces them to the disk.
+  private static void write(Path path, List<UserFeedback> feedbacks, StandardOpenOption mode)
+      throws IOException {
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(records);
+    for (UserFeedback feedback : feedbacks) {
+      ByteArrayOutputStream contents = new ByteArrayOutputStream();
+      LogUserDataStore.writeFeedback(new DataOutputStream(contents), feedback);
+      byte[] bytes = contents.toByteArray();
+      output.writeInt(bytes.length);
+      output.writeInt(LogUserDataStore.checksum(bytes));
+      output.write(bytes);
+    }
+    try (FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+      ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    }
+  }
+}
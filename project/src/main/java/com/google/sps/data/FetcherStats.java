@@ -0,0 +1,112 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the work that a PlacesFetcher did, and of the work it managed to avoid, since it
+ * was created.
+ */
+public final class FetcherStats {
+
+    // The number of queries that were fetched.
+    private final AtomicLong queries = new AtomicLong();
+
+    // The number of cuisine searches that were not sent again when the search radius was extended,
+    // since the cuisine already had enough results.
+    private final AtomicLong searchesSaved = new AtomicLong();
+
+    // The number of places whose details were not requested, since enough places were found
+    // without them.
+    private final AtomicLong detailsSkipped = new AtomicLong();
+
+    // The number of places that were dropped by their search results, before their details were
+    // requested.
+    private final AtomicLong candidatesPreFiltered = new AtomicLong();
+
+    /**
+     * @return the number of queries that were fetched.
+     */
+    public long queries() {
+        return queries.get();
+    }
+
+    /**
+     * @return the number of cuisine searches that were not sent again when the search radius was
+     *     extended, since the cuisine already had enough results.
+     */
+    public long searchesSaved() {
+        return searchesSaved.get();
+    }
+
+    /**
+     * @return the average number of cuisine searches saved per query.
+     */
+    public double searchesSavedPerQuery() {
+        return perQuery(searchesSaved());
+    }
+
+    /**
+     * @return the number of places whose details were not requested, since enough places were
+     *     found without them.
+     */
+    public long detailsSkipped() {
+        return detailsSkipped.get();
+    }
+
+    /**
+     * @return the average number of places per query whose details were not requested.
+     */
+    public double detailsSkippedPerQuery() {
+        return perQuery(detailsSkipped());
+    }
+
+    /**
+     * @return the number of places that were dropped by their search results, so that their
+     *     details were not requested.
+     */
+    public long candidatesPreFiltered() {
+        return candidatesPreFiltered.get();
+    }
+
+    /**
+     * @return the average number of places per query that were dropped by their search results.
+     */
+    public double candidatesPreFilteredPerQuery() {
+        return perQuery(candidatesPreFiltered());
+    }
+
+    void recordQuery() {
+        queries.incrementAndGet();
+    }
+
+    void recordSearchesSaved(long numOfSearches) {
+        searchesSaved.addAndGet(numOfSearches);
+    }
+
+    void recordDetailsSkipped(long numOfPlaces) {
+        detailsSkipped.addAndGet(numOfPlaces);
+    }
+
+    void recordCandidatesPreFiltered(long numOfPlaces) {
+        candidatesPreFiltered.addAndGet(numOfPlaces);
+    }
+
+    private double perQuery(long count) {
+        long numOfQueries = queries();
+        return numOfQueries == 0 ? 0 : (double) count / numOfQueries;
+    }
+}
@@ -0,0 +1,194 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static java.util.Comparator.comparing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A specification of the places that should be recommended, which can be built once, for example
+ * per request or per preferences, and applied to any number of lists of places. Lists that are
+ * larger than the parallel threshold are filtered in parallel, on the common fork/join pool.
+ */
+@AutoValue
+public abstract class FilterSpec {
+
+  // The default number of places above which lists are filtered in parallel. Below it, splitting
+  // the work costs more than it saves.
+  private static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+
+  // The number of places that each of the parallel tasks filters sequentially.
+  private static final int PARALLEL_CHUNK_SIZE = 2048;
+
+  /**
+   * @return the approximate minimum rating, an int between 1 and 5. Places only pass if their
+   *     rating's nearest int is higher than this (or equal to).
+   */
+  public abstract int approxMinRating();
+
+  /**
+   * @return true if places without an available website should be filtered out.
+   */
+  public abstract boolean filterIfNoWebsite();
+
+  /**
+   * @return true if different branches of the same place should be removed, keeping the best
+   *     rated one. Places are considered the same if they have the same name.
+   */
+  public abstract boolean filterBranchesOfSamePlace();
+
+  /**
+   * @return the number of places above which lists are filtered in parallel.
+   */
+  public abstract int parallelThreshold();
+
+  /**
+   * @return a builder that enables to build a new FilterSpec object, which doesn't filter
+   *     anything but closed places unless set otherwise
+   */
+  public static Builder builder() {
+    return new AutoValue_FilterSpec.Builder()
+        .setApproxMinRating(0)
+        .setFilterIfNoWebsite(false)
+        .setFilterBranchesOfSamePlace(false)
+        .setParallelThreshold(DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Filters the given places. Only operational places pass.
+   *
+   * @param places the list we want to filter
+   * @return the filtered list, ordered by name if branches are filtered, and by descending order
+   *     of ratings otherwise
+   */
+  public ImmutableList<Place> apply(ImmutableList<Place> places) {
+    List<Place> result = places.size() > parallelThreshold()
+        ? ForkJoinPool.commonPool().invoke(new FilterTask(places, 0, places.size()))
+        : filterRange(places, 0, places.size());
+    if (places.size() > parallelThreshold() && filterBranchesOfSamePlace()) {
+      // Each task only removed the branches it saw, so branches in different tasks remain.
+      result = filterRange(result, 0, result.size());
+    }
+    // Both sorts are stable, so equal places keep the order they had in the given list.
+    result.sort(filterBranchesOfSamePlace()
+        ? comparing(Place::name)
+        : (place1, place2) -> Float.compare(place2.rating(), place1.rating()));
+    return ImmutableList.copyOf(result);
+  }
+
+  // Applies all the filters to places[start, end) in a single pass, keeping their order. Of the
+  // branches of a place, the best rated one is kept, and the first of equally rated ones.
+  private List<Place> filterRange(List<Place> places, int start, int end) {
+    List<Place> result = new ArrayList<>();
+    Map<String, Integer> branchIndices = filterBranchesOfSamePlace() ? new HashMap<>() : null;
+    for (Place place : places.subList(start, end)) {
+      if (place.businessStatus() != BusinessStatus.OPERATIONAL
+          || Math.rint(place.rating()) < approxMinRating()
+          || (filterIfNoWebsite() && hasNoWebsiteLink(place))) {
+        continue;
+      }
+      if (branchIndices == null) {
+        result.add(place);
+        continue;
+      }
+      Integer branchIndex = branchIndices.putIfAbsent(place.name(), result.size());
+      if (branchIndex == null) {
+        result.add(place);
+      } else if (place.rating() > result.get(branchIndex).rating()) {
+        result.set(branchIndex, place);
+      }
+    }
+    return result;
+  }
+
+  private static boolean hasNoWebsiteLink(Place place) {
+    return Strings.isNullOrEmpty(place.websiteUrl()) && Strings.isNullOrEmpty(place.googleUrl());
+  }
+
+  /** Filters a range of places, by splitting it in halves until it's small enough. */
+  private final class FilterTask extends RecursiveTask<List<Place>> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Place> places;
+    private final int start;
+    private final int end;
+
+    FilterTask(List<Place> places, int start, int end) {
+      this.places = places;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected List<Place> compute() {
+      if (end - start <= PARALLEL_CHUNK_SIZE) {
+        return filterRange(places, start, end);
+      }
+      int middle = (start + end) >>> 1;
+      FilterTask right = new FilterTask(places, middle, end);
+      right.fork();
+      List<Place> result = new FilterTask(places, start, middle).compute();
+      result.addAll(right.join());
+      return result;
+    }
+  }
+
+  /**
+   * A builder class for creating FilterSpec objects.
+   */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    /**
+     * @param approxMinRating the approximate minimum rating, an int between 1 and 5
+     * @return a FilterSpec builder that enables to continue building
+     */
+    public abstract Builder setApproxMinRating(int approxMinRating);
+
+    /**
+     * @param filterIfNoWebsite whether places without an available website should be filtered
+     * @return a FilterSpec builder that enables to continue building
+     */
+    public abstract Builder setFilterIfNoWebsite(boolean filterIfNoWebsite);
+
+    /**
+     * @param filterBranchesOfSamePlace whether different branches of the same place should be
+     *     removed from the results
+     * @return a FilterSpec builder that enables to continue building
+     */
+    public abstract Builder setFilterBranchesOfSamePlace(boolean filterBranchesOfSamePlace);
+
+    /**
+     * @param parallelThreshold the number of places above which lists are filtered in parallel
+     * @return a FilterSpec builder that enables to continue building
+     */
+    public abstract Builder setParallelThreshold(int parallelThreshold);
+
+    /**
+     * Builds the FilterSpec object according to the data that was set so far.
+     *
+     * @return the object that was built
+     */
+    public abstract FilterSpec build();
+  }
+}
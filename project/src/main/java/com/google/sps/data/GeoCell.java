@@ -0,0 +1,65 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.maps.model.LatLng;
+
+/**
+ * A cell of a grid that divides the earth's surface into roughly square cells of a given size.
+ * Locations that are in the same cell are close enough to be treated as the same location, for
+ * example when caching the results of Google GEO API requests.
+ */
+@AutoValue
+public abstract class GeoCell {
+
+  /** The length of a single degree of latitude, in meters. */
+  private static final double METERS_PER_DEGREE = 111320;
+
+  /**
+   * @return the size of the cell's sides, in meters.
+   */
+  public abstract double cellSizeMeters();
+
+  /**
+   * @return the row of the cell, counted from the equator.
+   */
+  public abstract long latIndex();
+
+  /**
+   * @return the column of the cell in its row, counted from the prime meridian.
+   */
+  public abstract long lngIndex();
+
+  /**
+   * Returns the cell that contains the given location. Columns are narrowed according to the
+   * latitude of their row, so that cells stay roughly square away from the equator.
+   *
+   * @param location the location to find the cell of
+   * @param cellSizeMeters the size of the cells' sides, in meters
+   * @return the cell that contains the location
+   */
+  public static GeoCell of(LatLng location, double cellSizeMeters) {
+    checkArgument(cellSizeMeters > 0, "Cell size must be positive");
+    double cellSizeDegrees = cellSizeMeters / METERS_PER_DEGREE;
+    long latIndex = (long) Math.floor(location.lat / cellSizeDegrees);
+    double rowLat = (latIndex + 0.5) * cellSizeDegrees;
+    double cellWidthDegrees = cellSizeDegrees / Math.max(Math.cos(Math.toRadians(rowLat)), 0.01);
+    long lngIndex = (long) Math.floor(location.lng / cellWidthDegrees);
+    return new AutoValue_GeoCell(cellSizeMeters, latIndex, lngIndex);
+  }
+}
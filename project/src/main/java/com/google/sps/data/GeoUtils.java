@@ -0,0 +1,45 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.maps.model.LatLng;
+
+/**
+ * A utility class for geographic calculations.
+ */
+public final class GeoUtils {
+
+  /** The mean radius of the earth, in meters. */
+  private static final double EARTH_RADIUS_M = 6371008.8;
+
+  /**
+   * Calculates the great-circle distance between two locations, using the haversine formula.
+   *
+   * @param from the first location
+   * @param to the second location
+   * @return the distance between the locations, in meters
+   */
+  public static double distanceMeters(LatLng from, LatLng to) {
+    double latDelta = Math.toRadians(to.lat - from.lat);
+    double lngDelta = Math.toRadians(to.lng - from.lng);
+    double haversine =
+        Math.pow(Math.sin(latDelta / 2), 2)
+            + Math.cos(Math.toRadians(from.lat)) * Math.cos(Math.toRadians(to.lat))
+                * Math.pow(Math.sin(lngDelta / 2), 2);
+    return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(haversine)));
+  }
+
+  private GeoUtils() { }
+}
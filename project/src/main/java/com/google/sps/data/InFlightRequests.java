@@ -0,0 +1,78 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical requests that are in flight at the same time, so that concurrent callers
+ * that ask for the same key share a single outstanding request instead of each sending their own.
+ * A request is forgotten as soon as it completes, so unlike a cache, results are never reused by
+ * later callers.
+ *
+ * @param <K> the type of the keys that identify identical requests
+ * @param <V> the type of the requests' results
+ */
+public final class InFlightRequests<K, V> {
+
+    // The requests that are currently in flight, by their keys.
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // The number of callers that joined a request which was already in flight.
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Returns the result of the request with the given key. If an identical request is already in
+     * flight, its result is shared. Otherwise the request is sent on the calling thread.
+     *
+     * <p>Callers receive their own view of the shared request, so that cancelling it doesn't
+     * affect the other callers. If the shared request fails, all its callers receive the failure,
+     * and the next call with the same key sends a new request. Since the request is sent on the
+     * thread of the first caller, interrupting that thread fails the request for every caller, so
+     * a caller that gives up on a request must not interrupt the thread it was sent on.
+     *
+     * @param key the key that identifies identical requests
+     * @param request sends the request and returns its result
+     * @return a future that completes with the result of the shared request
+     */
+    public CompletableFuture<V> get(K key, Callable<V> request) {
+        CompletableFuture<V> newRequest = new CompletableFuture<>();
+        CompletableFuture<V> sharedRequest = inFlight.putIfAbsent(key, newRequest);
+        if (sharedRequest != null) {
+            coalescedCount.incrementAndGet();
+            return sharedRequest.thenApply(result -> result);
+        }
+        try {
+            newRequest.complete(request.call());
+        } catch (Throwable e) {
+            newRequest.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, newRequest);
+        }
+        return newRequest.thenApply(result -> result);
+    }
+
+    /**
+     * @return the number of callers that shared a request that was already in flight, instead of
+     *     sending their own.
+     */
+    public long coalescedCount() {
+        return coalescedCount.get();
+    }
+}
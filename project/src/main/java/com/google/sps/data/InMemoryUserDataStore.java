@@ -0,0 +1,120 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * A UserDataStore that keeps the data in memory, for load tests and local deployments. Only the
+ * data that's read back is kept: the registered users, the places of their feedbacks, and their
+ * preferences. The data of each user is guarded by one of a fixed number of locks, so requests
+ * of different users rarely contend, without a lock object per user.
+ */
+public final class InMemoryUserDataStore implements UserDataStore {
+
+  // The number of locks that the users are spread over.
+  private static final int NUM_OF_LOCK_STRIPES = 64;
+
+  private final Set<String> registeredUsers = ConcurrentHashMap.newKeySet();
+  private final ConcurrentMap<String, UserData> users = new ConcurrentHashMap<>();
+  private final Striped<ReadWriteLock> locks = Striped.readWriteLock(NUM_OF_LOCK_STRIPES);
+
+  @Override
+  public boolean isRegistered(String userId) {
+    return registeredUsers.contains(userId);
+  }
+
+  @Override
+  public boolean registerUserIfAbsent(String userId) {
+    return registeredUsers.add(userId);
+  }
+
+  @Override
+  public void updateUserFeedback(UserFeedback feedback) {
+    Lock lock = locks.get(feedback.userId()).writeLock();
+    lock.lock();
+    try {
+      UserData user = users.computeIfAbsent(feedback.userId(), id -> new UserData());
+      user.recommendedPlaces.addAll(feedback.recommendedPlaces());
+      feedback.chosenPlace().ifPresent(user.chosenPlaces::add);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public ImmutableList<String> getPlacesRecommendedToUser(String userId,
+      boolean getOnlyPlacesUserChose) {
+    Lock lock = locks.get(userId).readLock();
+    lock.lock();
+    try {
+      UserData user = users.get(userId);
+      if (user == null) {
+        return ImmutableList.of();
+      }
+      return ImmutableList.copyOf(
+          getOnlyPlacesUserChose ? user.chosenPlaces : user.recommendedPlaces);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void storeUserPreferences(String userId, UserPreferences userPreferences) {
+    if (userPreferences.cuisines().isEmpty()) {
+      return;
+    }
+    Lock lock = locks.get(userId).writeLock();
+    lock.lock();
+    try {
+      users.computeIfAbsent(userId, id -> new UserData()).preferences.add(userPreferences);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param userId the user we want the information about
+   * @return the preferences that were stored for the user, in the order they were stored
+   */
+  @VisibleForTesting
+  ImmutableList<UserPreferences> getStoredPreferences(String userId) {
+    Lock lock = locks.get(userId).readLock();
+    lock.lock();
+    try {
+      UserData user = users.get(userId);
+      return user == null ? ImmutableList.of() : ImmutableList.copyOf(user.preferences);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** The data of a single user, which is only accessed while holding the user's lock. */
+  private static final class UserData {
+    private final Set<String> recommendedPlaces = new LinkedHashSet<>();
+    private final Set<String> chosenPlaces = new LinkedHashSet<>();
+    private final List<UserPreferences> preferences = new ArrayList<>();
+  }
+}
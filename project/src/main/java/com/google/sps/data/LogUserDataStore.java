@@ -0,0 +1,406 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.maps.model.LatLng;
+
+/**
+ * A UserDataStore that appends every change to a log, and keeps an in-memory index of the data
+ * that's read back, in an InMemoryUserDataStore. When it's opened, the index is rebuilt by
+ * replaying the log, which is much faster than querying a remote store.
+ *
+ * <p>The log is a sequence of fixed-size segment files, which are memory-mapped, so appending a
+ * record is a copy into memory. Each record has its length and a CRC32 checksum of its contents,
+ * so a record that was torn by a crash while it was written is detected and dropped when the log
+ * is replayed. Records are in the operating system's page cache once a method returns, so they
+ * survive crashes of the process, and survive crashes of the machine once flush is called.
+ */
+public final class LogUserDataStore implements UserDataStore, Closeable {
+
+  @VisibleForTesting
+  static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+  // The length and the checksum of a record precede its contents.
+  static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  // The types of records, which are the first byte of their contents. A record's contents are
+  // never empty, so a zero length marks the end of the log within the segment.
+  private static final byte REGISTRATION_RECORD = 1;
+  private static final byte FEEDBACK_RECORD = 2;
+  private static final byte PREFERENCES_RECORD = 3;
+
+  private final Path dir;
+  private final int segmentSize;
+  private final InMemoryUserDataStore index = new InMemoryUserDataStore();
+
+  // The segment that records are appended to, which is guarded by the store's lock.
+  private int segmentNumber;
+  private FileChannel segmentChannel;
+  private MappedByteBuffer segment;
+
+  private LogUserDataStore(Path dir, int segmentSize) {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Opens the store whose log is in the given directory, replaying the log if there is one.
+   *
+   * @param dir the directory of the log, which is created if it doesn't exist
+   * @return the opened store
+   * @throws IOException if the log can't be read, or if a record other than the last one is
+   *     corrupt
+   */
+  public static LogUserDataStore open(Path dir) throws IOException {
+    return open(dir, DEFAULT_SEGMENT_SIZE);
+  }
+
+  @VisibleForTesting
+  static LogUserDataStore open(Path dir, int segmentSize) throws IOException {
+    checkArgument(segmentSize > HEADER_SIZE, "Segment size must be larger than a record header");
+    Files.createDirectories(dir);
+    LogUserDataStore store = new LogUserDataStore(dir, segmentSize);
+    store.replay();
+    return store;
+  }
+
+  private synchronized void replay() throws IOException {
+    List<Integer> segmentNumbers;
+    try (Stream<Path> files = Files.list(dir)) {
+      segmentNumbers = files
+          .map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+          .map(name -> Integer.parseInt(
+              name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    if (segmentNumbers.isEmpty()) {
+      mapSegment(0);
+      return;
+    }
+    try {
+      for (int i = 0; i < segmentNumbers.size(); i++) {
+        mapSegment(segmentNumbers.get(i));
+        boolean isLastSegment = i == segmentNumbers.size() - 1;
+        if (!replaySegment()) {
+          // Only the last record of the log can be torn by a crash, so a corrupt record in an
+          // earlier segment is left as it is, to be recovered by hand.
+          if (!isLastSegment) {
+            throw new IOException("Corrupt record in " + segmentPath(segmentNumber));
+          }
+          truncate();
+        }
+        if (!isLastSegment) {
+          releaseSegment();
+        }
+      }
+    } catch (IOException e) {
+      if (segment != null) {
+        releaseSegment();
+      }
+      throw e;
+    }
+  }
+
+  // Applies the records of the mapped segment to the index, and leaves its position at the end of
+  // the last valid record. Returns false if a corrupt record follows it.
+  private boolean replaySegment() throws IOException {
+    while (segment.remaining() >= HEADER_SIZE) {
+      int start = segment.position();
+      int length = segment.getInt();
+      if (length == 0) {
+        segment.position(start);
+        return true;
+      }
+      int checksum = segment.getInt();
+      if (length < 0 || length > segment.remaining()) {
+        segment.position(start);
+        return false;
+      }
+      byte[] contents = new byte[length];
+      segment.get(contents);
+      if (checksum(contents) != checksum) {
+        segment.position(start);
+        return false;
+      }
+      apply(contents);
+    }
+    return true;
+  }
+
+  // Zeroes the segment from its position, so that appended records aren't followed by the remains
+  // of a torn record.
+  private void truncate() {
+    int position = segment.position();
+    while (segment.hasRemaining()) {
+      segment.put((byte) 0);
+    }
+    segment.position(position);
+  }
+
+  private void apply(byte[] contents) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(contents));
+    byte type = input.readByte();
+    switch (type) {
+      case REGISTRATION_RECORD:
+        index.registerUserIfAbsent(input.readUTF());
+        break;
+      case FEEDBACK_RECORD:
+        index.updateUserFeedback(readFeedback(input));
+        break;
+      case PREFERENCES_RECORD:
+        String userId = input.readUTF();
+        index.storeUserPreferences(userId, readPreferences(input));
+        break;
+      default:
+        throw new IOException("Unknown record type " + type);
+    }
+  }
+
+  @Override
+  public boolean isRegistered(String userId) {
+    return index.isRegistered(userId);
+  }
+
+  @Override
+  public boolean registerUserIfAbsent(String userId) {
+    // The user is indexed only once the registration is in the log, so a registration that fails
+    // to be appended isn't indexed either. The check and both writes happen under the store's
+    // lock, so a user is never appended twice.
+    synchronized (this) {
+      if (index.isRegistered(userId)) {
+        return false;
+      }
+      append(REGISTRATION_RECORD, output -> output.writeUTF(userId));
+      return index.registerUserIfAbsent(userId);
+    }
+  }
+
+  @Override
+  public void updateUserFeedback(UserFeedback feedback) {
+    // Both writes happen under the store's lock, so the index applies the records in the order
+    // of the log, as a replay does.
+    synchronized (this) {
+      append(FEEDBACK_RECORD, output -> writeFeedback(output, feedback));
+      index.updateUserFeedback(feedback);
+    }
+  }
+
+  @Override
+  public ImmutableList<String> getPlacesRecommendedToUser(String userId,
+      boolean getOnlyPlacesUserChose) {
+    return index.getPlacesRecommendedToUser(userId, getOnlyPlacesUserChose);
+  }
+
+  @Override
+  public void storeUserPreferences(String userId, UserPreferences userPreferences) {
+    if (userPreferences.cuisines().isEmpty()) {
+      return;
+    }
+    synchronized (this) {
+      append(PREFERENCES_RECORD, output -> {
+        output.writeUTF(userId);
+        writePreferences(output, userPreferences);
+      });
+      index.storeUserPreferences(userId, userPreferences);
+    }
+  }
+
+  @VisibleForTesting
+  InMemoryUserDataStore getIndex() {
+    return index;
+  }
+
+  /**
+   * Writes the appended records to the disk, so that they survive crashes of the machine.
+   */
+  public synchronized void flush() {
+    checkState(segment != null, "The store is closed");
+    segment.force();
+  }
+
+  /**
+   * Writes the appended records to the disk, closes the log and unmaps its segment. The store
+   * can't be used after it's closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (segment != null) {
+      releaseSegment();
+    }
+  }
+
+  /** Writes the contents of a record. */
+  private interface RecordWriter {
+    void write(DataOutput output) throws IOException;
+  }
+
+  private void append(byte type, RecordWriter writer) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeByte(type);
+      writer.write(output);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    byte[] contents = bytes.toByteArray();
+    checkArgument(HEADER_SIZE + contents.length <= segmentSize, "Record is larger than a segment");
+    synchronized (this) {
+      checkState(segment != null, "The store is closed");
+      try {
+        if (segment.remaining() < HEADER_SIZE + contents.length) {
+          releaseSegment();
+          mapSegment(segmentNumber + 1);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      segment.putInt(contents.length).putInt(checksum(contents)).put(contents);
+    }
+  }
+
+  private void mapSegment(int number) throws IOException {
+    segmentNumber = number;
+    segmentChannel = FileChannel.open(segmentPath(number),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+  }
+
+  // Writes the mapped segment to the disk, and releases both its file and its mapping, rather than
+  // leaving the mapping until the buffer is garbage collected.
+  private void releaseSegment() throws IOException {
+    MappedByteBuffer released = segment;
+    segment = null;
+    released.force();
+    segmentChannel.close();
+    unmap(released);
+  }
+
+  // Unmaps the buffer with Unsafe.invokeCleaner, which only exists since Java 9. Before that, or if
+  // it isn't accessible, the mapping is released when the buffer is garbage collected. The buffer
+  // must not be used afterwards.
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      invokeCleaner.invoke(theUnsafe.get(null), buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Left to the garbage collector.
+    }
+  }
+
+  @VisibleForTesting
+  Path segmentPath(int number) {
+    return dir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+  }
+
+  static int checksum(byte[] contents) {
+    CRC32 crc = new CRC32();
+    crc.update(contents, 0, contents.length);
+    return (int) crc.getValue();
+  }
+
+  static void writeFeedback(DataOutput output, UserFeedback feedback) throws IOException {
+    output.writeUTF(feedback.userId());
+    output.writeLong(feedback.feedbackTimeInMillis());
+    output.writeBoolean(feedback.userTriedAgain());
+    output.writeInt(feedback.recommendedPlaces().size());
+    for (String place : feedback.recommendedPlaces()) {
+      output.writeUTF(place);
+    }
+    output.writeInt(
+        feedback.chosenPlace().map(feedback.recommendedPlaces()::indexOf).orElse(-1));
+  }
+
+  // The feedback was validated before it was written, and build would replace its time, so it's
+  // built without either.
+  static UserFeedback readFeedback(DataInput input) throws IOException {
+    UserFeedback.Builder feedback = UserFeedback.builder()
+        .setUserId(input.readUTF())
+        .setFeedbackTimeInMillis(input.readLong())
+        .setUserTriedAgain(input.readBoolean());
+    ImmutableList.Builder<String> places = ImmutableList.builder();
+    int numOfPlaces = input.readInt();
+    for (int i = 0; i < numOfPlaces; i++) {
+      places.add(input.readUTF());
+    }
+    ImmutableList<String> recommendedPlaces = places.build();
+    int chosenIndex = input.readInt();
+    if (chosenIndex >= 0) {
+      feedback.setChosenPlace(recommendedPlaces.get(chosenIndex));
+    }
+    return feedback.setRecommendedPlaces(recommendedPlaces).autoBuild();
+  }
+
+  private static void writePreferences(DataOutput output, UserPreferences preferences)
+      throws IOException {
+    output.writeFloat(preferences.minRating());
+    output.writeInt(preferences.maxPriceLevel());
+    output.writeDouble(preferences.location().lat);
+    output.writeDouble(preferences.location().lng);
+    output.writeBoolean(preferences.openNow());
+    output.writeInt(preferences.cuisines().size());
+    for (String cuisine : preferences.cuisines()) {
+      output.writeUTF(cuisine);
+    }
+  }
+
+  private static UserPreferences readPreferences(DataInput input) throws IOException {
+    UserPreferences.Builder preferences = UserPreferences.builder()
+        .setMinRating(input.readFloat())
+        .setMaxPriceLevel(input.readInt())
+        .setLocation(new LatLng(input.readDouble(), input.readDouble()))
+        .setOpenNow(input.readBoolean());
+    ImmutableList.Builder<String> cuisines = ImmutableList.builder();
+    int numOfCuisines = input.readInt();
+    for (int i = 0; i < numOfCuisines; i++) {
+      cuisines.add(input.readUTF());
+    }
+    return preferences.setCuisines(cuisines.build()).build();
+  }
+}
@@ -0,0 +1,72 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Optional;
+import com.google.auto.value.AutoValue;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlacesSearchResult;
+
+/**
+ * A place that was found by a Google Places API text search, before its details were requested.
+ * It holds the few details that the search results already include.
+ */
+@AutoValue
+public abstract class PlaceCandidate {
+
+  /**
+   * @return the place's placeId as defiened on Google Places.
+   */
+  public abstract String placeId();
+
+  /**
+   * @return the rating of the place as found by the search, or 0 if the place has no rating.
+   */
+  public abstract float rating();
+
+  /**
+   * @return the business status of the place as found by the search.
+   */
+  public abstract BusinessStatus businessStatus();
+
+  /**
+   * @return the location of the place, or an empty Optional if the search didn't include it.
+   */
+  public abstract Optional<LatLng> location();
+
+  /**
+   * @param placeId the place's placeId as defiened on Google Places
+   * @param rating the rating of the place, or 0 if the place has no rating
+   * @param businessStatus the business status of the place
+   * @param location the location of the place, if known
+   * @return a new PlaceCandidate
+   */
+  public static PlaceCandidate create(
+      String placeId, float rating, BusinessStatus businessStatus, Optional<LatLng> location) {
+    return new AutoValue_PlaceCandidate(placeId, rating, businessStatus, location);
+  }
+
+  /**
+   * @param searchResult a result of a Google Places API text search
+   * @return the candidate that the search result represents
+   */
+  public static PlaceCandidate fromSearchResult(PlacesSearchResult searchResult) {
+    return create(
+        searchResult.placeId,
+        searchResult.rating,
+        PlacesFetcher.toBusinessStatus(searchResult.businessStatus),
+        Optional.ofNullable(searchResult.geometry).map(geometry -> geometry.location));
+  }
+}
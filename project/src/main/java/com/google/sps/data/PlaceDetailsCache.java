@@ -0,0 +1,150 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A size bounded cache of the places fetched from Google Places API, keyed by their place IDs.
+ * Since the business status of a place changes more often than the rest of its details, it is
+ * cached separately and expires after a shorter time.
+ */
+public final class PlaceDetailsCache {
+
+    // The default maximal number of places kept in the cache.
+    private static final long DEFAULT_MAX_NUM_OF_PLACES = 10000;
+
+    // The default time after which the cached details of a place expire.
+    private static final Duration DEFAULT_DETAILS_TTL = Duration.ofDays(1);
+
+    // The default time after which the cached business status of a place expires.
+    private static final Duration DEFAULT_BUSINESS_STATUS_TTL = Duration.ofMinutes(30);
+
+    // The places' details, cached without their cuisines, which depend on the search.
+    private final Cache<String, Place> detailsCache;
+
+    // The places' business statuses.
+    private final Cache<String, BusinessStatus> businessStatusCache;
+
+    /**
+     * @return a PlaceDetailsCache with the default size and expiration times.
+     */
+    public static PlaceDetailsCache create() {
+        return create(DEFAULT_MAX_NUM_OF_PLACES, DEFAULT_DETAILS_TTL, DEFAULT_BUSINESS_STATUS_TTL);
+    }
+
+    /**
+     * @param maxNumOfPlaces the maximal number of places kept in the cache
+     * @param detailsTtl the time after which the cached details of a place expire
+     * @param businessStatusTtl the time after which the cached business status of a place expires
+     * @return a PlaceDetailsCache with the given size and expiration times
+     */
+    public static PlaceDetailsCache create(
+            long maxNumOfPlaces, Duration detailsTtl, Duration businessStatusTtl) {
+        return new PlaceDetailsCache(
+            maxNumOfPlaces, detailsTtl, businessStatusTtl, Ticker.systemTicker());
+    }
+
+    /**
+     * @return a PlaceDetailsCache that doesn't keep any place, so that every lookup is a miss.
+     */
+    public static PlaceDetailsCache disabled() {
+        return create(0 /* maxNumOfPlaces */, DEFAULT_DETAILS_TTL, DEFAULT_BUSINESS_STATUS_TTL);
+    }
+
+    /**
+     * PlaceDetailsCache constructor used for tests.
+     *
+     * @param maxNumOfPlaces the maximal number of places kept in the cache
+     * @param detailsTtl the time after which the cached details of a place expire
+     * @param businessStatusTtl the time after which the cached business status of a place expires
+     * @param ticker the time source used for expiring entries
+     */
+    @VisibleForTesting
+    PlaceDetailsCache(
+            long maxNumOfPlaces, Duration detailsTtl, Duration businessStatusTtl, Ticker ticker) {
+        this.detailsCache = createCache(maxNumOfPlaces, detailsTtl, ticker);
+        this.businessStatusCache = createCache(maxNumOfPlaces, businessStatusTtl, ticker);
+    }
+
+    /**
+     * @param placeId the ID of the requested place
+     * @return the cached place, without cuisines and with its business status as it was when the
+     *     place was cached, or an empty Optional if the place isn't cached
+     */
+    public Optional<Place> getIfPresent(String placeId) {
+        return Optional.ofNullable(detailsCache.getIfPresent(placeId));
+    }
+
+    /**
+     * @param placeId the ID of the requested place
+     * @return the cached business status of the place, or an empty Optional if it expired
+     */
+    public Optional<BusinessStatus> getBusinessStatusIfPresent(String placeId) {
+        return Optional.ofNullable(businessStatusCache.getIfPresent(placeId));
+    }
+
+    /**
+     * Caches the given place's details and business status.
+     *
+     * @param place the place to cache, its cuisines are not kept
+     */
+    public void put(Place place) {
+        detailsCache.put(place.placeId(), place.toBuilder().setCuisines(ImmutableSet.of()).build());
+        businessStatusCache.put(place.placeId(), place.businessStatus());
+    }
+
+    /**
+     * Caches the given business status, after it was refreshed.
+     *
+     * @param placeId the ID of the place
+     * @param businessStatus the place's current business status
+     */
+    public void putBusinessStatus(String placeId, BusinessStatus businessStatus) {
+        businessStatusCache.put(placeId, businessStatus);
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the places' details.
+     */
+    public CacheStats detailsStats() {
+        return detailsCache.stats();
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the places' business statuses.
+     */
+    public CacheStats businessStatusStats() {
+        return businessStatusCache.stats();
+    }
+
+    private static <V> Cache<String, V> createCache(
+            long maximumSize, Duration ttl, Ticker ticker) {
+        return CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+            .ticker(ticker)
+            .recordStats()
+            .build();
+    }
+}
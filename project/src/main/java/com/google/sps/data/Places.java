@@ -14,18 +14,16 @@
 
 package com.google.sps.data;
 
-import static java.util.Comparator.comparing;
-import static java.util.stream.Collectors.collectingAndThen;
-import static java.util.stream.Collectors.toCollection;
+import static com.google.common.base.Preconditions.checkArgument;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
-import com.google.common.base.Strings;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.maps.model.LatLng;
 
 /**
@@ -33,6 +31,10 @@ import com.google.maps.model.LatLng;
  */
 public final class Places {
 
+  // The number of places from which randomSample skips over places rather than drawing a random
+  // number for each of them, which costs more for short lists.
+  private static final int MIN_PLACES_TO_SKIP_WHEN_SAMPLING = 64;
+
   /**
    * Sorts the given list of Places randomly.
    *
@@ -45,6 +47,72 @@ public final class Places {
     return ImmutableList.copyOf(mutablePlaces);
   }
 
+  /**
+   * Chooses places at random, in random order, without copying or shuffling the whole list.
+   *
+   * @param places the list we want to choose from
+   * @param numOfPlaces the number of places to choose
+   * @return a new list containing numOfPlaces of the original list's elements (or all of them if
+   *     there are less), chosen uniformly at random and arranged in random order.
+   */
+  public static ImmutableList<Place> randomSample(ImmutableList<Place> places, int numOfPlaces) {
+    return randomSample(places, numOfPlaces, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Chooses places at random, in random order, without copying or shuffling the whole list.
+   *
+   * @param places the list we want to choose from
+   * @param numOfPlaces the number of places to choose
+   * @param random the source of randomness, which can be seeded for repeatable samples
+   * @return a new list containing numOfPlaces of the original list's elements (or all of them if
+   *     there are less), chosen uniformly at random and arranged in random order.
+   */
+  public static ImmutableList<Place> randomSample(
+        ImmutableList<Place> places, int numOfPlaces, Random random) {
+    checkArgument(numOfPlaces >= 0, "Number of places must not be negative");
+    Place[] sample = new Place[Math.min(numOfPlaces, places.size())];
+    for (int i = 0; i < sample.length; i++) {
+      sample[i] = places.get(i);
+    }
+    if (sample.length > 0 && places.size() < MIN_PLACES_TO_SKIP_WHEN_SAMPLING) {
+      // Reservoir sampling: the i-th place replaces a sampled place with probability k / (i + 1).
+      for (int i = sample.length; i < places.size(); i++) {
+        int position = random.nextInt(i + 1);
+        if (position < sample.length) {
+          sample[position] = places.get(i);
+        }
+      }
+    } else if (sample.length > 0) {
+      // Reservoir sampling that skips over the places that won't enter the sample (Li's
+      // Algorithm L), so it draws O(k log(n / k)) random numbers rather than one for each place.
+      double weight = Math.exp(Math.log(nextPositiveDouble(random)) / sample.length);
+      int i = sample.length - 1;
+      while (true) {
+        double skip = Math.floor(Math.log(nextPositiveDouble(random)) / Math.log(1 - weight));
+        if (skip >= places.size() - 1 - i) {
+          break;
+        }
+        i += (int) skip + 1;
+        sample[random.nextInt(sample.length)] = places.get(i);
+        weight *= Math.exp(Math.log(nextPositiveDouble(random)) / sample.length);
+      }
+    }
+    // The sampled places are in the order of the list, until they're shuffled.
+    for (int i = sample.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      Place temp = sample[i];
+      sample[i] = sample[j];
+      sample[j] = temp;
+    }
+    return ImmutableList.copyOf(sample);
+  }
+
+  // Returns a random double in (0, 1], whose logarithm is finite.
+  private static double nextPositiveDouble(Random random) {
+    return 1 - random.nextDouble();
+  }
+
   /**
    * Sorts the given list of Places by score.
    *
@@ -56,12 +124,72 @@ public final class Places {
    */
   public static ImmutableList<Place> scoreSort(
         ImmutableList<Place> places, LatLng userLocation, PlacesScorer scorer) {
-    List<Place> mutablePlaces = new ArrayList<>(places);
-    Map<Place, Double> placesScores = scorer.getScores(places, userLocation);
-    Collections.sort(mutablePlaces, (p1, p2) -> {
-      return placesScores.get(p2).compareTo(placesScores.get(p1));
-    });
-    return ImmutableList.copyOf(mutablePlaces);
+    return scoreSort(places, userLocation, scorer, ImmutableMap.of());
+  }
+
+  /**
+   * Sorts the given list of Places by score, reusing durations that were calculated in advance.
+   *
+   * @param places the list we want to sort
+   * @param userLocation the user's loaction, used for scores calculations
+   * @param scorer the PlacesScorer which calculates a score for each place
+   * @param prefetchedDurations the durations in seconds from places to the user's location, keyed
+   *     by place ID, as calculated by the scorer's prefetchDurations
+   * @return a new list containing the original list's elements
+   *     arranged by descending order of their scores.
+   */
+  public static ImmutableList<Place> scoreSort(
+        ImmutableList<Place> places,
+        LatLng userLocation,
+        PlacesScorer scorer,
+        ImmutableMap<String, Long> prefetchedDurations) {
+    return sortByScores(
+        places, scorer.getScoresArray(places, userLocation, prefetchedDurations));
+  }
+
+  /**
+   * Returns the places with the highest scores, letting the scorer skip the places that can't get
+   * one of the highest scores.
+   *
+   * @param places the list we want to choose from
+   * @param userLocation the user's loaction, used for scores calculations
+   * @param scorer the PlacesScorer which calculates a score for each place
+   * @param prefetchedDurations the durations in seconds from places to the user's location, keyed
+   *     by place ID, as calculated by the scorer's prefetchDurations
+   * @param numOfPlaces the number of places to return
+   * @return a new list containing the numOfPlaces places with the highest scores (or all of the
+   *     places if there are less), arranged by descending order of their scores.
+   */
+  public static ImmutableList<Place> scoreSortTop(
+        ImmutableList<Place> places,
+        LatLng userLocation,
+        PlacesScorer scorer,
+        ImmutableMap<String, Long> prefetchedDurations,
+        int numOfPlaces) {
+    Map<Place, Double> placesScores =
+        scorer.getTopScores(places, userLocation, prefetchedDurations, numOfPlaces);
+    ImmutableList<Place> scoredPlaces =
+        places.stream().filter(placesScores::containsKey).collect(ImmutableList.toImmutableList());
+    double[] scores = new double[scoredPlaces.size()];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = placesScores.get(scoredPlaces.get(i));
+    }
+    ImmutableList.Builder<Place> topPlaces = ImmutableList.builder();
+    for (int index : ScoreOrder.topDescending(scores, numOfPlaces)) {
+      topPlaces.add(scoredPlaces.get(index));
+    }
+    return topPlaces.build();
+  }
+
+  // Sorts the places by descending order of their scores, which are index-aligned with them, by
+  // sorting the indices rather than looking the places' scores up in every comparison.
+  private static ImmutableList<Place> sortByScores(ImmutableList<Place> places, double[] scores) {
+    ImmutableList.Builder<Place> sortedPlaces =
+        ImmutableList.builderWithExpectedSize(scores.length);
+    for (int index : ScoreOrder.sortDescending(scores)) {
+      sortedPlaces.add(places.get(index));
+    }
+    return sortedPlaces.build();
   }
 
 
@@ -78,26 +206,12 @@ public final class Places {
    */
   public static ImmutableList<Place> filter(ImmutableList<Place> places, int approxMinRating,
       Boolean filterIfNoWebsite, Boolean filterBranchesOfSamePlace) {
-    ImmutableList<Place> result =
-        places.stream()
-            .sorted(Comparator.comparing(Place::rating).reversed())
-            .filter(place -> place.businessStatus() == BusinessStatus.OPERATIONAL)
-            .filter(place -> Math.rint(place.rating()) >= approxMinRating)
-            .filter(place -> !(filterIfNoWebsite && placeHasNoWebsiteLink(place)))
-            .collect(ImmutableList.toImmutableList());
-    if (filterBranchesOfSamePlace) {
-      result = result.stream().collect(
-          collectingAndThen(
-              toCollection(() -> new TreeSet<>(comparing(Place::name))),
-              ImmutableList::copyOf
-          )
-      );
-    }
-    return result;
-  }
-
-  private static boolean placeHasNoWebsiteLink(Place place) {
-    return Strings.isNullOrEmpty(place.websiteUrl()) && Strings.isNullOrEmpty(place.googleUrl());
+    return FilterSpec.builder()
+        .setApproxMinRating(approxMinRating)
+        .setFilterIfNoWebsite(filterIfNoWebsite)
+        .setFilterBranchesOfSamePlace(filterBranchesOfSamePlace)
+        .build()
+        .apply(places);
   }
 
   private Places() { }
@@ -14,10 +14,15 @@
 
 package com.google.sps.data;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
 import com.google.maps.model.PlaceDetails;
 import com.google.maps.model.PlaceType;
 import com.google.maps.model.PriceLevel;
@@ -27,6 +32,8 @@ import com.google.maps.GeoApiContext;
 import com.google.maps.errors.ApiException;
 import com.google.maps.model.PlacesSearchResult;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
@@ -34,10 +41,24 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public class PlacesFetcher {
 
@@ -55,12 +76,49 @@ public class PlacesFetcher {
     // The maximal number of times the search radius will be extended.
     private static final int MAX_NUM_OF_RADIUS_EXTENSIONS = 4;
 
+    // The maximal distance of a place from the user, in meters, which is the radius of the widest
+    // search. Text searches prefer places within their radius, but may return farther places.
+    private static final int MAX_DISTANCE_M = INIT_SEARCH_RADIUS_M * MAX_NUM_OF_RADIUS_EXTENSIONS;
+
+    // The default maximal number of Places API requests that a single query sends at once.
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 11;
+
+    // The number of threads on which the Places API requests of all the queries are sent. Since
+    // every query is bounded on its own, concurrent queries don't wait for each other's requests.
+    private static final int REQUESTS_POOL_SIZE = 64;
+
     // A generator of TextSearchRequests.
     private SearchRequestGenerator searchRequestGenerator;
 
     // A generator of PlaceDetailsRequest.
     private PlaceDetailsRequestGenerator detailsRequestGenerator;
 
+    // The executor on which the Places API requests of all the queries are sent concurrently.
+    private final ExecutorService requestsExecutor;
+
+    // The maximal number of Places API requests that a single query sends at the same time.
+    private final int maxConcurrentRequests;
+
+    // A cache of the places' details, that spares requesting them on every query.
+    private final PlaceDetailsCache detailsCache;
+
+    // A cache of the text searches' results, shared by queries from nearby locations.
+    private final SearchResultCache searchCache;
+
+    // Counters of the work done and avoided by this fetcher.
+    private final FetcherStats stats = new FetcherStats();
+
+    // The text searches that are currently in flight, shared by identical concurrent searches.
+    private final InFlightRequests<SearchResultCache.SearchKey, ImmutableList<PlaceCandidate>>
+        inFlightSearches = new InFlightRequests<>();
+
+    // The details requests that are currently in flight, shared by concurrent queries.
+    private final InFlightRequests<String, Place> inFlightDetails = new InFlightRequests<>();
+
+    // The business status requests that are currently in flight, shared by concurrent queries.
+    private final InFlightRequests<String, BusinessStatus> inFlightBusinessStatuses =
+        new InFlightRequests<>();
+
     // The path of the configuration file containing the mapping of cuisines to search words.
     private static final String CUISINES_SEARCH_WORDS_CONFIG_PATH  = "cuisinesSearchWords.json";
 
@@ -74,10 +132,33 @@ public class PlacesFetcher {
      * @param geoApiContext the GeoApiContext used for all Google GEO API requests
      */
     public PlacesFetcher(GeoApiContext geoApiContext) {
-        this.searchRequestGenerator =
-            new SearchRequestGeneratorImpl(geoApiContext);
-        this.detailsRequestGenerator =
-            new PlaceDetailsRequestGeneratorImpl(geoApiContext);
+        this(
+            geoApiContext,
+            DEFAULT_MAX_CONCURRENT_REQUESTS,
+            PlaceDetailsCache.create(),
+            SearchResultCache.create());
+    }
+
+    /**
+     * PlacesFetcher constructor.
+     *
+     * @param geoApiContext the GeoApiContext used for all Google GEO API requests
+     * @param maxConcurrentRequests the maximal number of Places API requests that a single query
+     *     sends at the same time, for both text searches and place details
+     * @param detailsCache the cache that is looked up before requesting a place's details
+     * @param searchCache the cache that is looked up before sending a text search
+     */
+    public PlacesFetcher(
+            GeoApiContext geoApiContext,
+            int maxConcurrentRequests,
+            PlaceDetailsCache detailsCache,
+            SearchResultCache searchCache) {
+        this(
+            new SearchRequestGeneratorImpl(geoApiContext),
+            new PlaceDetailsRequestGeneratorImpl(geoApiContext),
+            maxConcurrentRequests,
+            detailsCache,
+            searchCache);
     }
 
     /**
@@ -92,8 +173,41 @@ public class PlacesFetcher {
     PlacesFetcher(
             SearchRequestGenerator textSearchRequestGenerator,
             PlaceDetailsRequestGenerator placeDetailsRequestGenerator) {
+        this(
+            textSearchRequestGenerator,
+            placeDetailsRequestGenerator,
+            DEFAULT_MAX_CONCURRENT_REQUESTS,
+            PlaceDetailsCache.disabled(),
+            SearchResultCache.disabled());
+    }
+
+    /**
+     * PlacesFetcher constructor used for tests.
+     *
+     * @param textSearchRequestGenerator
+     *     used for generating the TextSearchRequests sent to Google Places API
+     * @param placeDetailsRequestGenerator
+     *     used for generating the PlaceDetailsRequests sent to Google Places API
+     * @param maxConcurrentRequests the maximal number of Places API requests that a single query
+     *     sends at the same time
+     * @param detailsCache the cache that is looked up before requesting a place's details
+     * @param searchCache the cache that is looked up before sending a text search
+     */
+    @VisibleForTesting
+    PlacesFetcher(
+            SearchRequestGenerator textSearchRequestGenerator,
+            PlaceDetailsRequestGenerator placeDetailsRequestGenerator,
+            int maxConcurrentRequests,
+            PlaceDetailsCache detailsCache,
+            SearchResultCache searchCache) {
+        checkArgument(maxConcurrentRequests > 0, "At least one concurrent request is required");
         this.searchRequestGenerator = textSearchRequestGenerator;
         this.detailsRequestGenerator = placeDetailsRequestGenerator;
+        this.requestsExecutor =
+            createRequestsExecutor(Math.max(REQUESTS_POOL_SIZE, maxConcurrentRequests));
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.detailsCache = detailsCache;
+        this.searchCache = searchCache;
     }
 
     /**
@@ -105,39 +219,218 @@ public class PlacesFetcher {
      *     for places or for places details
      */
     public ImmutableList<Place> fetch(UserPreferences preferences) throws FetcherException {
-        Map<String, ImmutableSet.Builder<String>> placesSearchResults = new HashMap<>();
-        PlacesSearchResult[] cuisineResults;
+        stats.recordQuery();
+        return createPlacesList(search(preferences));
+    }
+
+    /**
+     * Builds a query and requests it from Google Places API, but requests the details of only as
+     * many places as needed for the given number of results. The details are requested in
+     * descending order of the places' ratings in the search results, and the filter is applied as
+     * they arrive, until enough places passed the filter.
+     *
+     * @param preferences the UserPreferences as specified by the user
+     * @param filter filters the places with fetched details, may remove places and reorder them
+     * @param maxResults the number of places that the caller needs
+     * @param safetyMargin the number of extra places that should pass the filter, so that the
+     *     caller still has alternatives when it ranks the places by other means than rating
+     * @return an immutable list of the places that passed the filter, which is shorter than
+     *     maxResults + safetyMargin only if there aren't enough such places
+     * @throws FetcherException when an error occurs in querying the Places API
+     *     for places or for places details
+     */
+    public ImmutableList<Place> fetch(
+            UserPreferences preferences,
+            UnaryOperator<ImmutableList<Place>> filter,
+            int maxResults,
+            int safetyMargin) throws FetcherException {
+        return fetch(preferences, filter, maxResults, safetyMargin, candidates -> { });
+    }
+
+    /**
+     * Like {@link #fetch(UserPreferences, UnaryOperator, int, int)}, but also reports every batch
+     * of places right before their details are requested, so that the caller can start working
+     * on them with what the search found, while the details are fetched.
+     *
+     * @param preferences the UserPreferences as specified by the user
+     * @param filter filters the places with fetched details, may remove places and reorder them
+     * @param maxResults the number of places that the caller needs
+     * @param safetyMargin the number of extra places that should pass the filter, so that the
+     *     caller still has alternatives when it ranks the places by other means than rating
+     * @param detailsRequestedListener called on the calling thread with every batch of places
+     *     whose details are about to be requested
+     * @return an immutable list of the places that passed the filter, which is shorter than
+     *     maxResults + safetyMargin only if there aren't enough such places
+     * @throws FetcherException when an error occurs in querying the Places API
+     *     for places or for places details
+     */
+    public ImmutableList<Place> fetch(
+            UserPreferences preferences,
+            UnaryOperator<ImmutableList<Place>> filter,
+            int maxResults,
+            int safetyMargin,
+            Consumer<ImmutableList<PlaceCandidate>> detailsRequestedListener)
+            throws FetcherException {
+        stats.recordQuery();
+        ImmutableMap<PlaceCandidate, ImmutableSet<String>> searchResults = search(preferences);
+        ImmutableList<PlaceCandidate> rankedCandidates = searchResults.keySet().stream()
+            .sorted(Comparator.comparing(PlaceCandidate::rating).reversed())
+            .collect(ImmutableList.toImmutableList());
+        int numOfPlacesNeeded = maxResults + safetyMargin;
+        List<Place> fetchedPlaces = new ArrayList<>();
+        ImmutableList<Place> filteredPlaces = ImmutableList.of();
+        while (fetchedPlaces.size() < rankedCandidates.size()
+                && filteredPlaces.size() < numOfPlacesNeeded) {
+            // Every round requests the details of as many places as still needed, all at once.
+            int batchEnd = Math.min(
+                rankedCandidates.size(),
+                fetchedPlaces.size() + numOfPlacesNeeded - filteredPlaces.size());
+            ImmutableList<PlaceCandidate> batch =
+                rankedCandidates.subList(fetchedPlaces.size(), batchEnd);
+            detailsRequestedListener.accept(batch);
+            fetchedPlaces.addAll(createPlacesList(Maps.toMap(batch, searchResults::get)));
+            filteredPlaces = filter.apply(ImmutableList.copyOf(fetchedPlaces));
+        }
+        stats.recordDetailsSkipped(rankedCandidates.size() - fetchedPlaces.size());
+        return filteredPlaces;
+    }
+
+    // Sends the text searches for the query, extending the search radius if too few places were
+    // found, and returns the found places along with the cuisines they were found for.
+    private ImmutableMap<PlaceCandidate, ImmutableSet<String>> search(UserPreferences preferences)
+            throws FetcherException {
+        Map<String, PlaceCandidate> candidates = new LinkedHashMap<>();
+        Map<String, ImmutableSet.Builder<String>> placesCuisines = new HashMap<>();
+        // The IDs of the places that were dropped by their search results.
+        Set<String> preFilteredPlaceIds = new HashSet<>();
         // If user didn't choose any cuisines, search on all possible cuisines
         ImmutableList<String> cuisines =
             (preferences.cuisines().isEmpty())
                 ? ImmutableList.<String>builder().addAll(CUISINE_TO_SEARCH_WORDS.keySet()).build()
                     : preferences.cuisines();
+        // The IDs of the places found for each cuisine so far.
+        SetMultimap<String, String> cuisinesPlaceIds = HashMultimap.create();
+        ImmutableList<String> cuisinesToSearch = cuisines;
         int attemptsCounter = 0;
         do {
+            if (attemptsCounter > 0) {
+                stats.recordSearchesSaved(cuisines.size() - cuisinesToSearch.size());
+            }
             attemptsCounter++;
-            for (String cuisine: cuisines) {
-                try {
-                    cuisineResults = getPlacesSearchResults(generateTextSearchRequest(
-                        preferences, INIT_SEARCH_RADIUS_M * attemptsCounter, cuisine));
-                } catch (ApiException
-                        | InterruptedException
-                        | IOException
-                        | IllegalStateException e) {
-                    throw new FetcherException("Couldn't fetch places from Places API", e);
-                    // TODO(Tal): Treat differently if some results were found in other oterations
-                }
-                for (PlacesSearchResult result : cuisineResults) {
-                    placesSearchResults.computeIfAbsent(
-                        result.placeId, k -> new ImmutableSet.Builder<String>()).add(cuisine);
+            ImmutableMap<String, ImmutableList<PlaceCandidate>> cuisinesResults =
+                searchAllCuisines(
+                    preferences, INIT_SEARCH_RADIUS_M * attemptsCounter, cuisinesToSearch);
+            for (String cuisine: cuisinesToSearch) {
+                for (PlaceCandidate candidate : cuisinesResults.get(cuisine)) {
+                    if (!isWorthFetching(candidate, preferences)) {
+                        preFilteredPlaceIds.add(candidate.placeId());
+                        continue;
+                    }
+                    // Results that were already found with a smaller radius are skipped.
+                    if (cuisinesPlaceIds.put(cuisine, candidate.placeId())) {
+                        candidates.putIfAbsent(candidate.placeId(), candidate);
+                        placesCuisines.computeIfAbsent(
+                            candidate.placeId(), k -> new ImmutableSet.Builder<String>())
+                            .add(cuisine);
+                    }
                 }
             }
+            cuisinesToSearch = getCuisinesShortOfResults(cuisines, cuisinesPlaceIds);
         } while (
-            placesSearchResults.size() < MIN_NUM_OF_RESULTS
+            candidates.size() < MIN_NUM_OF_RESULTS
             && attemptsCounter < MAX_NUM_OF_RADIUS_EXTENSIONS);
-        return createPlacesList(
-            placesSearchResults.entrySet().stream()
-                .collect(ImmutableMap.toImmutableMap(
-                    Map.Entry::getKey, e -> e.getValue().build())));
+        stats.recordCandidatesPreFiltered(preFilteredPlaceIds.size());
+        return candidates.values().stream()
+            .collect(ImmutableMap.toImmutableMap(
+                candidate -> candidate,
+                candidate -> placesCuisines.get(candidate.placeId()).build()));
+    }
+
+    // Returns false if the search result already shows that the place would be filtered out, so
+    // that its details shouldn't be requested: it isn't operational, its rating is too low, or it
+    // is too far from the user. Fields that the search result doesn't include pass the check.
+    private static boolean isWorthFetching(
+            PlaceCandidate candidate, UserPreferences preferences) {
+        if (candidate.businessStatus() == BusinessStatus.CLOSED_TEMPORARILY
+                || candidate.businessStatus() == BusinessStatus.CLOSED_PERMANENTLY) {
+            return false;
+        }
+        if (candidate.rating() > 0 && Math.rint(candidate.rating()) < preferences.minRating()) {
+            return false;
+        }
+        return !candidate.location().isPresent()
+            || GeoUtils.distanceMeters(preferences.location(), candidate.location().get())
+                <= MAX_DISTANCE_M;
+    }
+
+    // Returns the cuisines that should be searched again with an extended radius, which are the
+    // cuisines that didn't get their share of the minimal number of results. If all the cuisines
+    // got their share, but their results overlap too much, all of them are searched again.
+    private static ImmutableList<String> getCuisinesShortOfResults(
+            ImmutableList<String> cuisines, SetMultimap<String, String> cuisinesPlaceIds) {
+        int minNumOfResultsPerCuisine =
+            (MIN_NUM_OF_RESULTS + cuisines.size() - 1) / cuisines.size();
+        ImmutableList<String> cuisinesShortOfResults = cuisines.stream()
+            .filter(cuisine -> cuisinesPlaceIds.get(cuisine).size() < minNumOfResultsPerCuisine)
+            .collect(ImmutableList.toImmutableList());
+        return cuisinesShortOfResults.isEmpty() ? cuisines : cuisinesShortOfResults;
+    }
+
+    // Sends the text searches of all the cuisines at once, so that a search round takes as long as
+    // its slowest search rather than the sum of all of them. Returns the places found for each
+    // cuisine.
+    private ImmutableMap<String, ImmutableList<PlaceCandidate>> searchAllCuisines(
+            UserPreferences preferences, int radius, ImmutableList<String> cuisines)
+            throws FetcherException {
+        Map<String, Future<ImmutableList<PlaceCandidate>>> pendingSearches =
+            new LinkedHashMap<>();
+        ImmutableMap.Builder<String, ImmutableList<PlaceCandidate>> cuisinesResults =
+            ImmutableMap.builder();
+        try {
+            Semaphore requestPermits = new Semaphore(maxConcurrentRequests);
+            for (String cuisine : cuisines) {
+                pendingSearches.put(
+                    cuisine,
+                    submitRequest(
+                        requestPermits, () -> searchCuisine(preferences, radius, cuisine)));
+            }
+            for (Map.Entry<String, Future<ImmutableList<PlaceCandidate>>> search
+                    : pendingSearches.entrySet()) {
+                cuisinesResults.put(search.getKey(), awaitRequest(search.getValue()));
+            }
+        } catch (ApiException
+                | InterruptedException
+                | IOException
+                | IllegalStateException e) {
+            // The searches aren't interrupted, since a search may be shared with other queries.
+            pendingSearches.values().forEach(search -> search.cancel(false));
+            throw new FetcherException("Couldn't fetch places from Places API", e);
+            // TODO(Tal): Treat differently if some results were found in other oterations
+        }
+        return cuisinesResults.build();
+    }
+
+    // Returns the places found by the text search of the cuisine, which is sent only if the
+    // results of a similar search aren't cached, or shared if a similar search is in flight.
+    private ImmutableList<PlaceCandidate> searchCuisine(
+            UserPreferences preferences, int radius, String cuisine)
+            throws ApiException, InterruptedException, IOException {
+        Optional<ImmutableList<PlaceCandidate>> cachedPlaces =
+            searchCache.getIfPresent(preferences, cuisine, radius);
+        if (cachedPlaces.isPresent()) {
+            return cachedPlaces.get();
+        }
+        return awaitRequest(inFlightSearches.get(
+            searchCache.createKey(preferences, cuisine, radius),
+            () -> {
+                ImmutableList<PlaceCandidate> places =
+                    Arrays.stream(getPlacesSearchResults(
+                        generateTextSearchRequest(preferences, radius, cuisine)))
+                    .map(PlaceCandidate::fromSearchResult)
+                    .collect(ImmutableList.toImmutableList());
+                searchCache.put(preferences, cuisine, radius, places);
+                return places;
+            }));
     }
 
     private TextSearchRequest generateTextSearchRequest(
@@ -169,36 +462,110 @@ public class PlacesFetcher {
         return query.await().results;
     }
 
+    // Sends a request on the requests executor once one of the query's permits is free, and frees
+    // the permit when the request completes, so that a query has at most as many requests in
+    // flight as it has permits.
+    private <T> Future<T> submitRequest(Semaphore requestPermits, Callable<T> request)
+            throws InterruptedException {
+        requestPermits.acquire();
+        return requestsExecutor.submit(() -> {
+            try {
+                return request.call();
+            } finally {
+                requestPermits.release();
+            }
+        });
+    }
+
+    // Waits for a request that was sent on the requests executor to complete, and rethrows the
+    // exception that the request failed on, if any.
+    private static <T> T awaitRequest(Future<T> request)
+            throws ApiException, InterruptedException, IOException {
+        try {
+            return request.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Throwables.throwIfInstanceOf(cause, ApiException.class);
+            Throwables.throwIfInstanceOf(cause, InterruptedException.class);
+            Throwables.throwIfInstanceOf(cause, IOException.class);
+            Throwables.throwIfUnchecked(cause);
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // Requests the details of all the places concurrently, with at most maxConcurrentRequests in
+    // flight, and keeps the places in the order of the search results.
     private ImmutableList<Place> createPlacesList(
-            ImmutableMap<String, ImmutableSet<String>> searchResults) throws FetcherException {
+            ImmutableMap<PlaceCandidate, ImmutableSet<String>> searchResults)
+            throws FetcherException {
+        Map<PlaceCandidate, Future<Place>> pendingPlaces = new LinkedHashMap<>();
         List<Place> places = new ArrayList<Place>();
-        for (String placeId : searchResults.keySet()) {
-            PlaceDetailsRequest detailsRequest = genPlaceDetailsRequest(placeId);
-            PlaceDetails placeDetails;
-            try {
-                placeDetails = getPlaceDetails(detailsRequest);
-            } catch (ApiException | InterruptedException | IOException e) {
-                throw new FetcherException(
-                    "Couldn't get place details from Places API", e);
+        try {
+            Semaphore requestPermits = new Semaphore(maxConcurrentRequests);
+            for (PlaceCandidate candidate : searchResults.keySet()) {
+                pendingPlaces.put(
+                    candidate,
+                    submitRequest(requestPermits, () -> getPlace(candidate.placeId())));
             }
-            places.add(
-                Place.builder()
-                    .setName(placeDetails.name)
-                    .setWebsiteUrl(Objects.toString(placeDetails.website, ""))
-                    .setPhone(Strings.nullToEmpty(placeDetails.formattedPhoneNumber))
-                    .setRating(placeDetails.rating)
-                    .setPriceLevel(Integer.parseInt(placeDetails.priceLevel.toString()))
-                    .setLocation(placeDetails.geometry.location)
-                    .setPlaceId(placeDetails.placeId)
-                    .setGoogleUrl(Objects.toString(placeDetails.url, ""))
-                    .setBusinessStatus(BusinessStatus.valueOf(
-                        Objects.toString(placeDetails.businessStatus, "UNKNOWN")))
-                    .setCuisines(searchResults.get(placeId))
-                    .build());
+            for (Map.Entry<PlaceCandidate, Future<Place>> place : pendingPlaces.entrySet()) {
+                places.add(
+                    awaitRequest(place.getValue()).toBuilder()
+                        .setCuisines(searchResults.get(place.getKey()))
+                        .build());
+            }
+        } catch (ApiException | InterruptedException | IOException e) {
+            // The requests aren't interrupted, since a request may be shared with other queries.
+            pendingPlaces.values().forEach(place -> place.cancel(false));
+            throw new FetcherException(
+                "Couldn't get place details from Places API", e);
         }
         return ImmutableList.copyOf(places);
     }
 
+    // Returns the place with the given ID, without its cuisines. The place's details are requested
+    // only if they aren't cached, and otherwise only its business status may need to be refreshed.
+    // Concurrent queries for the same place share the same request.
+    private Place getPlace(String placeId)
+            throws ApiException, InterruptedException, IOException {
+        Optional<Place> cachedPlace = detailsCache.getIfPresent(placeId);
+        if (!cachedPlace.isPresent()) {
+            return awaitRequest(inFlightDetails.get(placeId, () -> {
+                Place place = createPlace(getPlaceDetails(genPlaceDetailsRequest(placeId)));
+                detailsCache.put(place);
+                return place;
+            }));
+        }
+        Optional<BusinessStatus> businessStatus = detailsCache.getBusinessStatusIfPresent(placeId);
+        if (!businessStatus.isPresent()) {
+            businessStatus = Optional.of(awaitRequest(inFlightBusinessStatuses.get(placeId, () -> {
+                BusinessStatus refreshedStatus = toBusinessStatus(
+                    getPlaceDetails(genBusinessStatusRequest(placeId)).businessStatus);
+                detailsCache.putBusinessStatus(placeId, refreshedStatus);
+                return refreshedStatus;
+            })));
+        }
+        return cachedPlace.get().toBuilder().setBusinessStatus(businessStatus.get()).build();
+    }
+
+    private static Place createPlace(PlaceDetails placeDetails) {
+        return Place.builder()
+            .setName(placeDetails.name)
+            .setWebsiteUrl(Objects.toString(placeDetails.website, ""))
+            .setPhone(Strings.nullToEmpty(placeDetails.formattedPhoneNumber))
+            .setRating(placeDetails.rating)
+            .setPriceLevel(Integer.parseInt(placeDetails.priceLevel.toString()))
+            .setLocation(placeDetails.geometry.location)
+            .setPlaceId(placeDetails.placeId)
+            .setGoogleUrl(Objects.toString(placeDetails.url, ""))
+            .setBusinessStatus(toBusinessStatus(placeDetails.businessStatus))
+            .setCuisines(ImmutableSet.of())
+            .build();
+    }
+
+    static BusinessStatus toBusinessStatus(String businessStatus) {
+        return BusinessStatus.valueOf(Objects.toString(businessStatus, "UNKNOWN"));
+    }
+
     private PlaceDetailsRequest genPlaceDetailsRequest(String placeId) {
         return detailsRequestGenerator.create(placeId)
             .fields(
@@ -213,6 +580,11 @@ public class PlacesFetcher {
                 PlaceDetailsRequest.FieldMask.BUSINESS_STATUS);
     }
 
+    private PlaceDetailsRequest genBusinessStatusRequest(String placeId) {
+        return detailsRequestGenerator.create(placeId)
+            .fields(PlaceDetailsRequest.FieldMask.BUSINESS_STATUS);
+    }
+
     /**
      * Queries Google Places API to recieve requested details about a certain place.
      *
@@ -226,6 +598,21 @@ public class PlacesFetcher {
         return request.await();
     }
 
+    /**
+     * @return the number of text searches that joined an identical search which was in flight.
+     */
+    @VisibleForTesting
+    long coalescedSearches() {
+        return inFlightSearches.coalescedCount();
+    }
+
+    /**
+     * @return counters of the work that this fetcher did, and of the work it managed to avoid.
+     */
+    public FetcherStats stats() {
+        return stats;
+    }
+
      /**
      * Creates a String query that includes all text search words matching the specified cuisines.
      *
@@ -242,6 +629,15 @@ public class PlacesFetcher {
         }
     }
 
+    private static ExecutorService createRequestsExecutor(int maxConcurrentRequests) {
+        return Executors.newFixedThreadPool(
+            maxConcurrentRequests,
+            new ThreadFactoryBuilder()
+                .setNameFormat("places-fetcher-%d")
+                .setDaemon(true)
+                .build());
+    }
+
     private static ImmutableMap<String, List<String>> getCuisinesMap() {
         Type mapType = new TypeToken<Map<String, List<String>>>() {
         }.getType();
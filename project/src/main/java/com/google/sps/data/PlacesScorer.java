@@ -14,6 +14,7 @@
 
 package com.google.sps.data;
 
+import java.util.concurrent.CompletableFuture;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.maps.model.LatLng;
@@ -32,4 +33,66 @@ public interface PlacesScorer {
      */
     ImmutableMap<Place, Double> getScores(ImmutableList<Place> places, LatLng userLocation);
 
+    /**
+     * Returns a map of a place and the score the place gets based on a scoring algorithm, reusing
+     * the durations that were calculated in advance by prefetchDurations.
+     *
+     * @param places A list of places we want to calculate their score
+     * @param userLocation The user’s location used for score calculation
+     * @param prefetchedDurations The durations in seconds from places to the user's location,
+     *     keyed by place ID. Places that are missing from it are handled as by getScores.
+     * @return A map between a place to a double representing the place’s score
+     */
+    ImmutableMap<Place, Double> getScores(
+        ImmutableList<Place> places,
+        LatLng userLocation,
+        ImmutableMap<String, Long> prefetchedDurations);
+
+    /**
+     * Returns the scores the places get based on a scoring algorithm, in an array that is
+     * index-aligned with the places. Unlike getScores, neither the places nor the scores are
+     * boxed or hashed, so this is the preferred way to score many places.
+     *
+     * @param places A list of places we want to calculate their score
+     * @param userLocation The user’s location used for score calculation
+     * @param prefetchedDurations The durations in seconds from places to the user's location,
+     *     keyed by place ID. Places that are missing from it are handled as by getScores.
+     * @return An array whose i-th element is the score of the i-th place
+     */
+    double[] getScoresArray(
+        ImmutableList<Place> places,
+        LatLng userLocation,
+        ImmutableMap<String, Long> prefetchedDurations);
+
+    /**
+     * Returns a map of a place and the score the place gets based on a scoring algorithm, but only
+     * for enough places to surely include the places with the highest scores. Places that can't
+     * get one of the highest scores may be missing, which spares calculating their scores.
+     *
+     * @param places A list of places we want to find the top scores of
+     * @param userLocation The user’s location used for score calculation
+     * @param prefetchedDurations The durations in seconds from places to the user's location,
+     *     keyed by place ID, as calculated by prefetchDurations
+     * @param numOfTopPlaces The number of places with the highest scores that must be included
+     * @return A map between a place to a double representing the place’s score
+     */
+    ImmutableMap<Place, Double> getTopScores(
+        ImmutableList<Place> places,
+        LatLng userLocation,
+        ImmutableMap<String, Long> prefetchedDurations,
+        int numOfTopPlaces);
+
+    /**
+     * Starts calculating the durations from the given places to the user's location, using the
+     * locations that were found by the places search, so that it can run while the places'
+     * details are fetched.
+     *
+     * @param candidates The places found by the search, places without a location are ignored
+     * @param userLocation The user’s location used for score calculation
+     * @return A future of the durations in seconds from the places to the user's location, keyed
+     *     by place ID, which lacks the places whose durations couldn't be calculated
+     */
+    CompletableFuture<ImmutableMap<String, Long>> prefetchDurations(
+        ImmutableList<PlaceCandidate> candidates, LatLng userLocation);
+
 }
@@ -1,9 +1,26 @@
 package com.google.sps.data;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.maps.DistanceMatrixApi;
 import com.google.maps.DistanceMatrixApiRequest;
 import com.google.maps.GeoApiContext;
@@ -27,16 +44,95 @@ public class PlacesScorerImpl implements PlacesScorer {
     // will not contribute to the place's score.
     private static final double MAX_DURATION_SECONDS = 40 * 60;
 
+    // The maximal number of origins in a single Distance Matrix request, as limited by the API.
+    private static final int MAX_ORIGINS_PER_REQUEST = 25;
+
+    // The number of places whose durations are requested together by getTopScores. Small batches
+    // request fewer durations that turn out to be useless, at the cost of more round trips.
+    private static final int TOP_SCORES_BATCH_SIZE = 3;
+
+    // The maximal number of Distance Matrix requests that are sent at the same time, by all the
+    // queries together. Requests beyond it wait in the executor's queue for a free thread.
+    private static final int MAX_CONCURRENT_REQUESTS = 32;
+
     // The entry point for a Google GEO API request.
     private GeoApiContext context;
 
+    // The executor on which Distance Matrix requests are sent concurrently, including the ones
+    // that are sent in advance while places' details are fetched.
+    private final ExecutorService requestsExecutor;
+
+    // A cache of the durations, that spares requesting them for places that were scored lately
+    // for nearby users.
+    private final DurationCache durationCache;
+
+    // Estimates the durations of places, so that the durations of the places that may get the
+    // highest scores are the ones prefetched while the places' details are fetched.
+    private final DurationEstimator durationEstimator;
+
+    // Counters of the Distance Matrix requests sent by this scorer.
+    private final ScorerStats stats = new ScorerStats();
+
     /**
-     * PlacesScorerImpl constructor.
+     * PlacesScorerImpl constructor, with a duration cache of the default size and the default
+     * duration estimation.
      *
      * @param geoApiContext the GeoApiContext used for all Google GEO API requests
      */
     public PlacesScorerImpl(GeoApiContext geoApiContext) {
+        this(geoApiContext, DurationCache.create(), DurationEstimator.create());
+    }
+
+    /**
+     * PlacesScorerImpl constructor.
+     *
+     * @param geoApiContext the GeoApiContext used for all Google GEO API requests
+     * @param durationCache the cache of the durations from places to users' locations
+     * @param durationEstimator estimates the durations of places, which determines the places
+     *     whose durations are prefetched
+     */
+    public PlacesScorerImpl(
+            GeoApiContext geoApiContext,
+            DurationCache durationCache,
+            DurationEstimator durationEstimator) {
+        this(
+            geoApiContext,
+            Executors.newFixedThreadPool(
+                MAX_CONCURRENT_REQUESTS,
+                new ThreadFactoryBuilder()
+                    .setNameFormat("places-scorer-%d")
+                    .setDaemon(true)
+                    .build()),
+            durationCache,
+            durationEstimator);
+    }
+
+    /**
+     * PlacesScorerImpl constructor used for tests.
+     *
+     * @param geoApiContext the GeoApiContext used for all Google GEO API requests
+     * @param requestsExecutor the executor on which Distance Matrix requests are sent
+     * @param durationCache the cache of the durations from places to users' locations
+     * @param durationEstimator estimates the durations of places, which determines the places
+     *     whose durations are prefetched
+     */
+    @VisibleForTesting
+    PlacesScorerImpl(
+            GeoApiContext geoApiContext,
+            ExecutorService requestsExecutor,
+            DurationCache durationCache,
+            DurationEstimator durationEstimator) {
         this.context = geoApiContext;
+        this.requestsExecutor = requestsExecutor;
+        this.durationCache = durationCache;
+        this.durationEstimator = durationEstimator;
+    }
+
+    /**
+     * @return the counters of the Distance Matrix requests sent by this scorer.
+     */
+    public ScorerStats stats() {
+        return stats;
     }
 
     /**
@@ -47,51 +143,325 @@ public class PlacesScorerImpl implements PlacesScorer {
     @Override
     public ImmutableMap<Place, Double> getScores(
             ImmutableList<Place> places, LatLng userLocation) {
-        ImmutableMap<Place, Long> durations;
-        try {
-            durations = getDurations(places, userLocation);
-        } catch (ApiException | InterruptedException | IOException e) {
-            return scoreByRating(places); // TODO(Tal): log error
+        return getScores(places, userLocation, ImmutableMap.of());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Adapts the scores calculated by getScoresArray
+     */
+    @Override
+    public ImmutableMap<Place, Double> getScores(
+            ImmutableList<Place> places,
+            LatLng userLocation,
+            ImmutableMap<String, Long> prefetchedDurations) {
+        double[] scores = getScoresArray(places, userLocation, prefetchedDurations);
+        ImmutableMap.Builder<Place, Double> scoresMap = new ImmutableMap.Builder<>();
+        for (int i = 0; i < scores.length; i++) {
+            scoresMap.put(places.get(i), scores[i]);
         }
-        ImmutableMap.Builder<Place, Double> scores = new ImmutableMap.Builder<>();
+        return scoresMap.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The durations of places that weren't prefetched are requested before scoring. Places whose
+     * durations can't be calculated are scored by their rating only
+     */
+    @Override
+    public double[] getScoresArray(
+            ImmutableList<Place> places,
+            LatLng userLocation,
+            ImmutableMap<String, Long> prefetchedDurations) {
+        Map<String, LatLng> locationsToRequest = new LinkedHashMap<>();
         for (Place place : places) {
-            scores.put(place, calculatePlaceScore(durations, place));
+            if (!prefetchedDurations.containsKey(place.placeId())) {
+                locationsToRequest.putIfAbsent(place.placeId(), place.location());
+            }
         }
-        return scores.build();
+        Map<String, Long> durations = new HashMap<>(prefetchedDurations);
+        if (!locationsToRequest.isEmpty()) {
+            durations.putAll(
+                getDurations(ImmutableMap.copyOf(locationsToRequest), userLocation).join());
+        }
+        double[] scores = new double[places.size()];
+        for (int i = 0; i < scores.length; i++) {
+            Place place = places.get(i);
+            Long duration = durations.get(place.placeId());
+            scores[i] = duration != null
+                ? calculateScore(place.rating(), duration)
+                : scoreByRating(place);
+        }
+        return scores;
     }
 
-    // Calculates a score for place,
-    // score calculated by the place's rating and driving duration to the user's location.
-    private double calculatePlaceScore(ImmutableMap<Place, Long> durations, Place place) {
+    /**
+     * {@inheritDoc}
+     *
+     * Places are handled in descending order of their ratings, since a place's score is bounded
+     * by the score it would get with no driving duration at all. The durations are requested in
+     * small batches, and only until no remaining place's bound can reach the top scores
+     */
+    @Override
+    public ImmutableMap<Place, Double> getTopScores(
+            ImmutableList<Place> places,
+            LatLng userLocation,
+            ImmutableMap<String, Long> prefetchedDurations,
+            int numOfTopPlaces) {
+        return calculateTopScores(
+            places,
+            prefetchedDurations,
+            numOfTopPlaces,
+            batch -> getDurations(
+                batch.stream()
+                    .collect(ImmutableMap.toImmutableMap(
+                        Place::placeId, Place::location, (first, second) -> first)),
+                userLocation).join());
+    }
+
+    /**
+     * Scores the places like getTopScores, requesting the durations that weren't prefetched in
+     * batches from the given requester.
+     *
+     * @param places the places to score
+     * @param prefetchedDurations the durations in seconds that are already known, keyed by place
+     *     ID
+     * @param numOfTopPlaces the number of places whose scores must be exact
+     * @param durationsRequester returns the durations in seconds of a batch of places, keyed by
+     *     place ID, without the places whose durations can't be calculated
+     * @return the scores of the places that may be among the top ones
+     */
+    static ImmutableMap<Place, Double> calculateTopScores(
+            ImmutableList<Place> places,
+            ImmutableMap<String, Long> prefetchedDurations,
+            int numOfTopPlaces,
+            Function<List<Place>, ImmutableMap<String, Long>> durationsRequester) {
+        checkArgument(numOfTopPlaces > 0, "Number of top places must be positive");
+        Map<Place, Double> scores = new HashMap<>();
+        // The lowest of the top scores found so far is at the head.
+        PriorityQueue<Double> topScores = new PriorityQueue<>();
+        List<Place> placesToRequest = new ArrayList<>();
+        // Places whose durations were prefetched are scored first, since they cost nothing.
+        for (Place place : sortByRating(places)) {
+            if (prefetchedDurations.containsKey(place.placeId())) {
+                addScore(
+                    scores,
+                    topScores,
+                    numOfTopPlaces,
+                    place,
+                    calculateScore(place.rating(), prefetchedDurations.get(place.placeId())));
+            } else {
+                placesToRequest.add(place);
+            }
+        }
+        int nextPlace = 0;
+        while (nextPlace < placesToRequest.size()) {
+            double minTopScore = topScores.size() < numOfTopPlaces
+                ? Double.NEGATIVE_INFINITY : topScores.peek();
+            int batchEnd = nextPlace;
+            while (batchEnd < placesToRequest.size()
+                    && batchEnd - nextPlace < TOP_SCORES_BATCH_SIZE
+                    && upperBoundScore(placesToRequest.get(batchEnd)) >= minTopScore) {
+                batchEnd++;
+            }
+            if (batchEnd == nextPlace) {
+                // The remaining places' ratings are lower, and so are their bounds.
+                break;
+            }
+            List<Place> batch = placesToRequest.subList(nextPlace, batchEnd);
+            ImmutableMap<String, Long> durations = durationsRequester.apply(batch);
+            for (Place place : batch) {
+                addScore(
+                    scores,
+                    topScores,
+                    numOfTopPlaces,
+                    place,
+                    durations.containsKey(place.placeId())
+                        ? calculateScore(place.rating(), durations.get(place.placeId()))
+                        : scoreByRating(place));
+            }
+            nextPlace = batchEnd;
+        }
+        return places.stream()
+            .filter(scores::containsKey)
+            .distinct()
+            .collect(ImmutableMap.toImmutableMap(place -> place, scores::get));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The durations are requested from the Distance Matrix API on background threads, only for
+     * the top K candidates by their estimated scores. The places whose requests failed are
+     * missing from the result
+     */
+    @Override
+    public CompletableFuture<ImmutableMap<String, Long>> prefetchDurations(
+            ImmutableList<PlaceCandidate> candidates, LatLng userLocation) {
+        ImmutableMap<String, LatLng> locations =
+            selectPrefetchCandidates(candidates, userLocation, durationEstimator).stream()
+                .collect(ImmutableMap.toImmutableMap(
+                    PlaceCandidate::placeId,
+                    candidate -> candidate.location().get(),
+                    (first, second) -> first));
+        return getDurations(locations, userLocation);
+    }
+
+    /**
+     * Selects the candidates whose durations prefetchDurations requests, which are the top K
+     * candidates that have locations by their scores with estimated durations.
+     *
+     * @param candidates the candidates to select from
+     * @param userLocation the user's location
+     * @param durationEstimator estimates the durations of the candidates, and determines K
+     * @return the selected candidates, in descending order of their estimated scores
+     */
+    static ImmutableList<PlaceCandidate> selectPrefetchCandidates(
+            ImmutableList<PlaceCandidate> candidates,
+            LatLng userLocation,
+            DurationEstimator durationEstimator) {
+        return candidates.stream()
+            .filter(candidate -> candidate.location().isPresent())
+            .sorted(Comparator.comparingDouble((PlaceCandidate candidate) -> calculateScore(
+                    candidate.rating(),
+                    durationEstimator.estimateSeconds(candidate.location().get(), userLocation)))
+                .reversed())
+            .limit(durationEstimator.configFor(userLocation).topK())
+            .collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * Calculates a score by a place's rating and driving duration to the user's location.
+     *
+     * @param rating the rating of the place
+     * @param durationSeconds the driving duration from the place to the user, in seconds
+     * @return the score of the place
+     */
+    static double calculateScore(float rating, long durationSeconds) {
         return
-            RATING_WEIGHT * (place.rating() / MAX_RATING)
-            + DURATION_WEIGHT * Math.max(1 - (durations.get(place) / MAX_DURATION_SECONDS), 0);
+            RATING_WEIGHT * (rating / MAX_RATING)
+            + DURATION_WEIGHT * Math.max(1 - (durationSeconds / MAX_DURATION_SECONDS), 0);
     }
 
-    // Scores places by their rating only, used in case of errors in durations calculation.
-    private ImmutableMap<Place, Double> scoreByRating(ImmutableList<Place> places) {
-        return places.stream().collect(
-            ImmutableMap.toImmutableMap(place -> place, place -> place.rating() / MAX_RATING));
+    // Returns the highest score that the place can get, which it gets if it takes no time at all
+    // to drive from it.
+    private static double upperBoundScore(Place place) {
+        return calculateScore(place.rating(), 0 /* durationSeconds */);
     }
 
-    // Returns the duration in seconds from each place on places list to the destination
-    private ImmutableMap<Place, Long> getDurations(ImmutableList<Place> places, LatLng destination)
+    // Returns the places in descending order of their ratings, keeping the order of places with
+    // equal ratings.
+    private static ImmutableList<Place> sortByRating(ImmutableList<Place> places) {
+        return places.stream()
+            .sorted(Comparator.comparing(Place::rating).reversed())
+            .collect(ImmutableList.toImmutableList());
+    }
+
+    // Adds the score of a place, and keeps the given number of top scores.
+    private static void addScore(
+            Map<Place, Double> scores,
+            PriorityQueue<Double> topScores,
+            int numOfTopPlaces,
+            Place place,
+            double score) {
+        scores.put(place, score);
+        topScores.add(score);
+        if (topScores.size() > numOfTopPlaces) {
+            topScores.poll();
+        }
+    }
+
+    // Scores a place by its rating only, used in case of errors in durations calculation.
+    private static double scoreByRating(Place place) {
+        return place.rating() / MAX_RATING;
+    }
+
+    // Returns a future of the duration in seconds from each of the given locations to the
+    // destination, keyed by the place IDs of the locations. Only the durations that aren't cached
+    // are requested. They are split into chunks that fit in a single Distance Matrix request,
+    // which are sent concurrently. The locations of chunks whose requests failed are missing from
+    // the result.
+    private CompletableFuture<ImmutableMap<String, Long>> getDurations(
+            ImmutableMap<String, LatLng> locations, LatLng destination) {
+        ImmutableMap.Builder<String, Long> cachedDurations = new ImmutableMap.Builder<>();
+        List<String> uncachedPlaceIds = new ArrayList<>();
+        for (String placeId : locations.keySet()) {
+            Optional<Long> cachedDuration = durationCache.getIfPresent(placeId, destination);
+            if (cachedDuration.isPresent()) {
+                cachedDurations.put(placeId, cachedDuration.get());
+            } else {
+                uncachedPlaceIds.add(placeId);
+            }
+        }
+        List<CompletableFuture<ImmutableMap<String, Long>>> pendingChunks = new ArrayList<>();
+        for (List<String> chunk : Lists.partition(uncachedPlaceIds, MAX_ORIGINS_PER_REQUEST)) {
+            ImmutableMap<String, LatLng> chunkLocations =
+                ImmutableMap.copyOf(Maps.toMap(chunk, locations::get));
+            pendingChunks.add(CompletableFuture.supplyAsync(
+                () -> getChunkDurations(chunkLocations, destination), requestsExecutor));
+        }
+        return CompletableFuture.allOf(pendingChunks.toArray(new CompletableFuture<?>[0]))
+            .thenApply(unused -> {
+                pendingChunks.forEach(chunk -> cachedDurations.putAll(chunk.join()));
+                return cachedDurations.build();
+            });
+    }
+
+    // Returns the durations of a single chunk of locations, or an empty map if its request
+    // failed, and records the request's latency. Locations that the Distance Matrix API couldn't
+    // route get the maximal duration, which isn't cached, so that they are requested again by
+    // the next query rather than scored as unreachable for the cache's whole TTL.
+    private ImmutableMap<String, Long> getChunkDurations(
+            ImmutableMap<String, LatLng> locations, LatLng destination) {
+        long startNanos = System.nanoTime();
+        try {
+            ImmutableMap<String, Long> durations = requestDurations(locations, destination);
+            stats.recordDistanceRequest(
+                System.nanoTime() - startNanos, locations.size(), false /* failed */);
+            durations.forEach((placeId, seconds) ->
+                durationCache.put(placeId, destination, seconds));
+            return ImmutableMap.copyOf(Maps.toMap(
+                locations.keySet(),
+                placeId -> durations.getOrDefault(placeId, (long) MAX_DURATION_SECONDS)));
+        } catch (ApiException | InterruptedException | IOException e) {
+            stats.recordDistanceRequest(
+                System.nanoTime() - startNanos, locations.size(), true /* failed */);
+            return ImmutableMap.of(); // TODO(Tal): log error
+        }
+    }
+
+    /**
+     * Returns the duration in seconds from each of the given locations to the destination, keyed
+     * by the place IDs of the locations, using a single Distance Matrix request.
+     *
+     * @param locations the locations of the places, keyed by place ID
+     * @param destination the user's location
+     * @return the durations in seconds, keyed by place ID, without the places whose elements in
+     *     the Distance Matrix don't have an OK status
+     * @throws IOException Thrown when an I/O exception of some sort has occurred
+     * @throws InterruptedException Thrown when a thread is occupied and interrupted
+     * @throws ApiException Thrown if the API returned result is an error
+     */
+    @VisibleForTesting
+    ImmutableMap<String, Long> requestDurations(
+            ImmutableMap<String, LatLng> locations, LatLng destination)
             throws ApiException, InterruptedException, IOException {
-        ImmutableMap.Builder<Place, Long> durations = new ImmutableMap.Builder<>();
-        LatLng[] origins = places.stream()
-            .map(place -> place.location()).toArray(LatLng[]::new);
+        ImmutableList<String> placeIds = locations.keySet().asList();
+        ImmutableMap.Builder<String, Long> durations = new ImmutableMap.Builder<>();
+        LatLng[] origins = locations.values().toArray(new LatLng[0]);
         DistanceMatrixApiRequest distanceRequest =
             DistanceMatrixApi.newRequest(context)
                 .origins(origins)
                 .destinations(destination)
                 .mode(TravelMode.DRIVING);
         DistanceMatrix distanceMatrix = getDistanceResults(distanceRequest);
-        for (int i = 0; i < places.size(); i++) {
+        for (int i = 0; i < placeIds.size(); i++) {
             DistanceMatrixElement element = distanceMatrix.rows[i].elements[0];
+            // TODO(Tal): decide if places without an OK status should be filtered out
             if (element.status == DistanceMatrixElementStatus.OK) {
-                durations.put(places.get(i), element.duration.inSeconds);
-            } else { // TODO(Tal): decide if this place should be filtered out
-                durations.put(places.get(i), (long) MAX_DURATION_SECONDS);
+                durations.put(placeIds.get(i), element.duration.inSeconds);
             }
         }
         return durations.build();
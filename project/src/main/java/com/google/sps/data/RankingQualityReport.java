@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.maps.model.LatLng;
+
+/**
+ * Measures how well a DurationEstimator configuration selects the places whose durations
+ * PlacesScorerImpl prefetches while the places' details are fetched, which are the top K places by
+ * their estimated scores. The durations of the other places that may reach the top are requested
+ * by getTopScores afterwards, so the ranking doesn't depend on the estimation, but the latency and
+ * the number of Distance Matrix elements do. The measurement runs over recorded queries, whose
+ * actual durations are known, and scores them the way getTopScores does.
+ */
+@AutoValue
+public abstract class RankingQualityReport {
+
+  /**
+   * @return the number of queries that were measured.
+   */
+  public abstract int numOfQueries();
+
+  /**
+   * @return the average fraction of the top places whose durations were prefetched, rather than
+   *     requested after the places' details were fetched.
+   */
+  public abstract double averagePrefetchedTopRate();
+
+  /**
+   * @return the average fraction of the places whose durations were neither prefetched nor
+   *     requested by getTopScores.
+   */
+  public abstract double averageElementsSavedRate();
+
+  /**
+   * @param queries the recorded queries to measure
+   * @param durationEstimator the estimation that selects the places whose durations are
+   *     prefetched
+   * @param numOfResults the number of top places, as recommended to the user
+   * @return a report of the measurement
+   */
+  public static RankingQualityReport create(
+      ImmutableList<RecordedQuery> queries,
+      DurationEstimator durationEstimator,
+      int numOfResults) {
+    checkArgument(numOfResults > 0, "Number of results must be positive");
+    double sumOfPrefetchedTopRates = 0;
+    double sumOfElementsSavedRates = 0;
+    for (RecordedQuery query : queries) {
+      ImmutableMap<String, Long> prefetchedDurations = PlacesScorerImpl.selectPrefetchCandidates(
+              query.places().stream()
+                  .map(RankingQualityReport::toCandidate)
+                  .collect(ImmutableList.toImmutableList()),
+              query.userLocation(),
+              durationEstimator)
+          .stream()
+          .collect(ImmutableMap.toImmutableMap(
+              PlaceCandidate::placeId, candidate -> query.durations().get(candidate.placeId())));
+      Set<String> requestedPlaceIds = new HashSet<>(prefetchedDurations.keySet());
+      ImmutableMap<Place, Double> scores = PlacesScorerImpl.calculateTopScores(
+          query.places(),
+          prefetchedDurations,
+          numOfResults,
+          batch -> {
+            batch.forEach(place -> requestedPlaceIds.add(place.placeId()));
+            return batch.stream()
+                .collect(ImmutableMap.toImmutableMap(
+                    Place::placeId,
+                    place -> query.durations().get(place.placeId()),
+                    (first, second) -> first));
+          });
+      ImmutableList<Place> top = scores.keySet().stream()
+          .sorted(Comparator.comparingDouble((Place place) -> scores.get(place)).reversed())
+          .limit(numOfResults)
+          .collect(ImmutableList.toImmutableList());
+      sumOfPrefetchedTopRates += top.isEmpty()
+          ? 1
+          : (double) top.stream()
+                .filter(place -> prefetchedDurations.containsKey(place.placeId()))
+                .count()
+              / top.size();
+      sumOfElementsSavedRates += query.places().isEmpty()
+          ? 0
+          : 1 - (double) requestedPlaceIds.size() / query.places().size();
+    }
+    int numOfQueries = queries.size();
+    return new AutoValue_RankingQualityReport(
+        numOfQueries,
+        numOfQueries == 0 ? 1 : sumOfPrefetchedTopRates / numOfQueries,
+        numOfQueries == 0 ? 0 : sumOfElementsSavedRates / numOfQueries);
+  }
+
+  // Returns the candidate that the search results of the place would have held.
+  private static PlaceCandidate toCandidate(Place place) {
+    return PlaceCandidate.create(
+        place.placeId(), place.rating(), place.businessStatus(), Optional.of(place.location()));
+  }
+
+  /** A query whose places' actual durations to the user are known. */
+  @AutoValue
+  public abstract static class RecordedQuery {
+
+    /**
+     * @return the location of the user who made the query.
+     */
+    public abstract LatLng userLocation();
+
+    /**
+     * @return the places that were scored for the query.
+     */
+    public abstract ImmutableList<Place> places();
+
+    /**
+     * @return the actual driving durations in seconds from the places to the user, keyed by
+     *     place ID.
+     */
+    public abstract ImmutableMap<String, Long> durations();
+
+    /**
+     * @param userLocation the location of the user who made the query
+     * @param places the places that were scored for the query
+     * @param durations the actual driving durations in seconds from the places to the user,
+     *     keyed by place ID, which should include all the places
+     * @return a new RecordedQuery
+     */
+    public static RecordedQuery create(
+        LatLng userLocation, ImmutableList<Place> places, Map<String, Long> durations) {
+      checkArgument(
+          places.stream().allMatch(place -> durations.containsKey(place.placeId())),
+          "The durations of all the places must be known");
+      return new AutoValue_RankingQualityReport_RecordedQuery(
+          userLocation, places, ImmutableMap.copyOf(durations));
+    }
+  }
+}
@@ -0,0 +1,137 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A utility class for ordering places by scores that are kept in an array, index-aligned with the
+ * list of places, so that neither the places nor the scores have to be boxed or hashed.
+ */
+public final class ScoreOrder {
+
+  /**
+   * Sorts the indices of the given scores by descending order of the scores. The sort is stable,
+   * so indices of equal scores keep their ascending order.
+   *
+   * @param scores the scores to sort by
+   * @return the indices of the scores, arranged by descending order of the scores
+   */
+  public static int[] sortDescending(double[] scores) {
+    int[] indices = new int[scores.length];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = i;
+    }
+    // A bottom-up merge sort, which is stable, unlike sorting primitives with Arrays.sort.
+    int[] buffer = new int[indices.length];
+    for (int width = 1; width < indices.length; width *= 2) {
+      for (int start = 0; start < indices.length - width; start += 2 * width) {
+        merge(scores, indices, buffer, start, start + width,
+            Math.min(start + 2 * width, indices.length));
+      }
+    }
+    return indices;
+  }
+
+  /**
+   * Selects the indices of the highest scores, in the same order that sortDescending arranges
+   * them in, using a bounded heap. This takes O(n log k) time rather than O(n log n), and only
+   * allocates the k selected indices.
+   *
+   * @param scores the scores to select from
+   * @param numOfTopIndices the number of indices to select
+   * @return the indices of the numOfTopIndices highest scores (or all of the indices if there are
+   *     less), arranged by descending order of the scores
+   */
+  public static int[] topDescending(double[] scores, int numOfTopIndices) {
+    checkArgument(numOfTopIndices >= 0, "Number of top indices must not be negative");
+    // A heap of the best indices found so far, whose root is the worst of them.
+    int[] heap = new int[Math.min(numOfTopIndices, scores.length)];
+    int heapSize = 0;
+    for (int i = 0; i < scores.length; i++) {
+      if (heapSize < heap.length) {
+        heap[heapSize] = i;
+        siftUp(scores, heap, heapSize++);
+      } else if (heapSize > 0 && isBetter(scores, i, heap[0])) {
+        heap[0] = i;
+        siftDown(scores, heap, 0, heapSize);
+      }
+    }
+    // Repeatedly moving the worst index to the end leaves the best index first.
+    while (heapSize > 1) {
+      int worst = heap[0];
+      heap[0] = heap[--heapSize];
+      heap[heapSize] = worst;
+      siftDown(scores, heap, 0, heapSize);
+    }
+    return heap;
+  }
+
+  // Returns whether the first index comes before the second in descending order of the scores,
+  // which on equal scores is the ascending order of the indices.
+  private static boolean isBetter(double[] scores, int first, int second) {
+    return scores[first] > scores[second] || (scores[first] == scores[second] && first < second);
+  }
+
+  private static void siftUp(double[] scores, int[] heap, int position) {
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (!isBetter(scores, heap[parent], heap[position])) {
+        return;
+      }
+      swap(heap, parent, position);
+      position = parent;
+    }
+  }
+
+  private static void siftDown(double[] scores, int[] heap, int position, int heapSize) {
+    while (2 * position + 1 < heapSize) {
+      int worstChild = 2 * position + 1;
+      if (worstChild + 1 < heapSize && isBetter(scores, heap[worstChild], heap[worstChild + 1])) {
+        worstChild++;
+      }
+      if (!isBetter(scores, heap[position], heap[worstChild])) {
+        return;
+      }
+      swap(heap, position, worstChild);
+      position = worstChild;
+    }
+  }
+
+  private static void swap(int[] heap, int first, int second) {
+    int temp = heap[first];
+    heap[first] = heap[second];
+    heap[second] = temp;
+  }
+
+  // Merges the sorted runs indices[start, middle) and indices[middle, end), taking from the first
+  // run on equal scores.
+  private static void merge(
+      double[] scores, int[] indices, int[] buffer, int start, int middle, int end) {
+    System.arraycopy(indices, start, buffer, start, end - start);
+    int left = start;
+    int right = middle;
+    for (int i = start; i < end; i++) {
+      if (right == end
+          || (left < middle && scores[buffer[left]] >= scores[buffer[right]])) {
+        indices[i] = buffer[left++];
+      } else {
+        indices[i] = buffer[right++];
+      }
+    }
+  }
+
+  private ScoreOrder() { }
+}
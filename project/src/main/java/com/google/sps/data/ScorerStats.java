@@ -0,0 +1,88 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the Distance Matrix requests that a PlacesScorerImpl sent since it was created.
+ */
+public final class ScorerStats {
+
+    // The number of Distance Matrix requests that were sent.
+    private final AtomicLong distanceRequests = new AtomicLong();
+
+    // The number of Distance Matrix requests that failed.
+    private final AtomicLong failedDistanceRequests = new AtomicLong();
+
+    // The number of Distance Matrix elements that were requested, which is what the API bills.
+    private final AtomicLong distanceMatrixElements = new AtomicLong();
+
+    // The total time that the Distance Matrix requests took, in nanoseconds.
+    private final AtomicLong distanceRequestsNanos = new AtomicLong();
+
+    // The time that the slowest Distance Matrix request took, in nanoseconds.
+    private final AtomicLong maxDistanceRequestNanos = new AtomicLong();
+
+    /**
+     * @return the number of Distance Matrix requests that were sent.
+     */
+    public long distanceRequests() {
+        return distanceRequests.get();
+    }
+
+    /**
+     * @return the number of Distance Matrix requests that failed, whose places were scored by
+     *     their rating only.
+     */
+    public long failedDistanceRequests() {
+        return failedDistanceRequests.get();
+    }
+
+    /**
+     * @return the number of Distance Matrix elements that were requested, which is what the API
+     *     bills. Every request has a single destination, so it has an element per origin.
+     */
+    public long distanceMatrixElements() {
+        return distanceMatrixElements.get();
+    }
+
+    /**
+     * @return the average time that a Distance Matrix request took, including failed requests.
+     */
+    public Duration averageDistanceRequestLatency() {
+        long numOfRequests = distanceRequests();
+        return numOfRequests == 0
+            ? Duration.ZERO : Duration.ofNanos(distanceRequestsNanos.get() / numOfRequests);
+    }
+
+    /**
+     * @return the time that the slowest Distance Matrix request took.
+     */
+    public Duration maxDistanceRequestLatency() {
+        return Duration.ofNanos(maxDistanceRequestNanos.get());
+    }
+
+    void recordDistanceRequest(long latencyNanos, int numOfElements, boolean failed) {
+        distanceRequests.incrementAndGet();
+        distanceMatrixElements.addAndGet(numOfElements);
+        if (failed) {
+            failedDistanceRequests.incrementAndGet();
+        }
+        distanceRequestsNanos.addAndGet(latencyNanos);
+        maxDistanceRequestNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+}
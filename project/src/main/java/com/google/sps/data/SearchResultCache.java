@@ -0,0 +1,159 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A size bounded cache of the places found by Google Places API text searches. Searches are
+ * keyed by the cell of the grid that contains the user's location rather than the exact location,
+ * so that queries of users that are close to each other share the same results. Larger cells
+ * raise the hit rate, at the cost of results that are less accurate for the user's location.
+ */
+public final class SearchResultCache {
+
+    // The default maximal number of searches kept in the cache.
+    private static final long DEFAULT_MAX_NUM_OF_SEARCHES = 5000;
+
+    // The default time after which cached search results expire. Searches may be restricted to
+    // places that are open now, so their results shouldn't be kept for long.
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(15);
+
+    // The default size of the grid cells that searches are keyed by, in meters.
+    private static final double DEFAULT_CELL_SIZE_M = 500;
+
+    private final Cache<SearchKey, ImmutableList<PlaceCandidate>> cache;
+
+    // The size of the grid cells that searches are keyed by, in meters.
+    private final double cellSizeMeters;
+
+    /**
+     * @return a SearchResultCache with the default size, expiration time and cell size.
+     */
+    public static SearchResultCache create() {
+        return create(DEFAULT_MAX_NUM_OF_SEARCHES, DEFAULT_TTL, DEFAULT_CELL_SIZE_M);
+    }
+
+    /**
+     * @param maxNumOfSearches the maximal number of searches kept in the cache
+     * @param ttl the time after which cached search results expire
+     * @param cellSizeMeters the size of the grid cells that searches are keyed by, in meters
+     * @return a SearchResultCache with the given size, expiration time and cell size
+     */
+    public static SearchResultCache create(
+            long maxNumOfSearches, Duration ttl, double cellSizeMeters) {
+        return new SearchResultCache(
+            maxNumOfSearches, ttl, cellSizeMeters, Ticker.systemTicker());
+    }
+
+    /**
+     * @return a SearchResultCache that doesn't keep any search, so that every lookup is a miss.
+     */
+    public static SearchResultCache disabled() {
+        return create(0 /* maxNumOfSearches */, DEFAULT_TTL, DEFAULT_CELL_SIZE_M);
+    }
+
+    /**
+     * SearchResultCache constructor used for tests.
+     *
+     * @param maxNumOfSearches the maximal number of searches kept in the cache
+     * @param ttl the time after which cached search results expire
+     * @param cellSizeMeters the size of the grid cells that searches are keyed by, in meters
+     * @param ticker the time source used for expiring entries
+     */
+    @VisibleForTesting
+    SearchResultCache(long maxNumOfSearches, Duration ttl, double cellSizeMeters, Ticker ticker) {
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(maxNumOfSearches)
+            .expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+            .ticker(ticker)
+            .recordStats()
+            .build();
+        this.cellSizeMeters = cellSizeMeters;
+    }
+
+    /**
+     * @param preferences the preferences the search was made for
+     * @param cuisine the cuisine that was searched
+     * @param radius the search radius, in meters
+     * @return the places found by the search, or an empty Optional if the search isn't cached
+     */
+    public Optional<ImmutableList<PlaceCandidate>> getIfPresent(
+            UserPreferences preferences, String cuisine, int radius) {
+        return Optional.ofNullable(cache.getIfPresent(createKey(preferences, cuisine, radius)));
+    }
+
+    /**
+     * Caches the results of a search.
+     *
+     * @param preferences the preferences the search was made for
+     * @param cuisine the cuisine that was searched
+     * @param radius the search radius, in meters
+     * @param places the places found by the search
+     */
+    public void put(
+            UserPreferences preferences,
+            String cuisine,
+            int radius,
+            ImmutableList<PlaceCandidate> places) {
+        cache.put(createKey(preferences, cuisine, radius), places);
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the cache, including its hit rate.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @param preferences the preferences the search is made for
+     * @param cuisine the cuisine that is searched
+     * @param radius the search radius, in meters
+     * @return the key of the search, which is shared by all the searches that this cache treats
+     *     as identical
+     */
+    SearchKey createKey(UserPreferences preferences, String cuisine, int radius) {
+        return new AutoValue_SearchResultCache_SearchKey(
+            GeoCell.of(preferences.location(), cellSizeMeters),
+            cuisine,
+            radius,
+            preferences.maxPriceLevel(),
+            preferences.openNow());
+    }
+
+    /** The parameters that determine the results of a text search. */
+    @AutoValue
+    abstract static class SearchKey {
+        abstract GeoCell cell();
+
+        abstract String cuisine();
+
+        abstract int radius();
+
+        abstract int maxPriceLevel();
+
+        abstract boolean openNow();
+    }
+}
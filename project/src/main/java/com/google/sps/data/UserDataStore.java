@@ -0,0 +1,74 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The storage of the data that Food-Mood keeps about its users, behind DataAccessor. The arguments
+ * are validated by DataAccessor, so implementations may assume they're valid. Implementations
+ * must be safe for use by concurrent requests.
+ */
+public interface UserDataStore {
+
+  /**
+   * @param userId the ID of the user that we want to check the registration status for
+   * @return whether the user was previously registered
+   */
+  boolean isRegistered(String userId);
+
+  /**
+   * Registers the user unless they're already registered, atomically, so that concurrent
+   * registrations of the same user register them only once.
+   *
+   * @param userId the ID of the user that we want to register
+   * @return true if the user was registered now, and false if they were already registered
+   */
+  boolean registerUserIfAbsent(String userId);
+
+  /**
+   * Stores the user feedback, and adds its places to the user's history.
+   *
+   * @param feedback a UserFeedback that holds all the information about the user feedback
+   */
+  void updateUserFeedback(UserFeedback feedback);
+
+  /**
+   * Stores a batch of feedbacks as updateUserFeedback does. By default, they're stored one by
+   * one.
+   *
+   * @param feedbacks the feedbacks to store
+   */
+  default void updateUserFeedbacks(List<UserFeedback> feedbacks) {
+    feedbacks.forEach(this::updateUserFeedback);
+  }
+
+  /**
+   * @param userId the user we want the information about
+   * @param getOnlyPlacesUserChose if this is true, the returned places would consist only of
+   *     places that the user chose, according to their feedback
+   * @return the distinct IDs of the places that were recommended to the user in the past
+   */
+  ImmutableList<String> getPlacesRecommendedToUser(String userId, boolean getOnlyPlacesUserChose);
+
+  /**
+   * Stores the user's preferences. Preferences without cuisines aren't stored.
+   *
+   * @param userId the ID of the user to store the preferences for
+   * @param userPreferences the user choices on the query form
+   */
+  void storeUserPreferences(String userId, UserPreferences userPreferences);
+}
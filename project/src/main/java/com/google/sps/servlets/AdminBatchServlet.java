@@ -0,0 +1,99 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.io.IOException;
+import java.util.Optional;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.JsonObject;
+import com.google.sps.data.DatastoreUserDataStore;
+
+/**
+ * A servlet that runs a maintenance operation of the datastore, a page of entities at a time, so
+ * that each request completes within a request's deadline. It responds with the cursor to pass as
+ * the "cursor" parameter of the next request, which is missing once all the entities were
+ * handled. Only admins of the application may use it.
+ */
+@SuppressWarnings("serial")
+abstract class AdminBatchServlet extends HttpServlet {
+
+  // The number of entities handled by each request.
+  @VisibleForTesting
+  static final int PAGE_SIZE = 500;
+
+  // The message of the error that users who aren't admins get.
+  private final String forbiddenMessage;
+
+  private UserService userService;
+  private DatastoreUserDataStore dataStore;
+
+  AdminBatchServlet(String forbiddenMessage) {
+    this.forbiddenMessage = forbiddenMessage;
+  }
+
+  @Override
+  public void init() {
+    this.userService = UserServiceFactory.getUserService();
+    this.dataStore = new DatastoreUserDataStore();
+  }
+
+  @VisibleForTesting
+  void init(UserService service, DatastoreUserDataStore store) {
+    this.userService = service;
+    this.dataStore = store;
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN, forbiddenMessage);
+      return;
+    }
+    String cursor = request.getParameter("cursor");
+    Optional<Cursor> nextCursor;
+    try {
+      nextCursor = runPage(
+          dataStore,
+          isNullOrEmpty(cursor) ? Optional.empty() : Optional.of(Cursor.fromWebSafeString(cursor)),
+          PAGE_SIZE);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor.");
+      return;
+    }
+    JsonObject result = new JsonObject();
+    nextCursor.ifPresent(next -> result.addProperty("cursor", next.toWebSafeString()));
+    response.setContentType("application/json");
+    response.getWriter().write(result.toString());
+  }
+
+  /**
+   * Handles a single page of entities.
+   *
+   * @param dataStore the store whose entities are handled
+   * @param startCursor the cursor of the page, or empty for the first page
+   * @param pageSize the number of entities in the page
+   * @return the cursor of the next page, or empty if all the entities were handled
+   */
+  abstract Optional<Cursor> runPage(
+      DatastoreUserDataStore dataStore, Optional<Cursor> startCursor, int pageSize);
+}
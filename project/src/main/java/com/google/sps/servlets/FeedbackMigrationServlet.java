@@ -0,0 +1,39 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.util.Optional;
+import javax.servlet.annotation.WebServlet;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.sps.data.DatastoreUserDataStore;
+
+/**
+ * A servlet that converts the recommendation entities, which were stored for each recommended
+ * place, to feedback entities, which are stored for each feedback, a page at a time.
+ */
+@WebServlet("/admin/migrate-feedback")
+@SuppressWarnings("serial")
+public final class FeedbackMigrationServlet extends AdminBatchServlet {
+
+  public FeedbackMigrationServlet() {
+    super("Only admins may migrate feedback.");
+  }
+
+  @Override
+  Optional<Cursor> runPage(
+      DatastoreUserDataStore dataStore, Optional<Cursor> startCursor, int pageSize) {
+    return dataStore.migrateRecommendationsToFeedback(startCursor, pageSize);
+  }
+}
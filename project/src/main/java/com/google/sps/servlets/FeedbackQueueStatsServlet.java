@@ -0,0 +1,61 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.sps.data.FeedbackQueue;
+
+/**
+ * A servlet that responds with the statistics of the feedback queue: its durability mode, its
+ * depth, the latencies of its flushes and the number of feedbacks it spilled. Only admins of the
+ * application may use it.
+ */
+@WebServlet("/admin/feedback-queue")
+@SuppressWarnings("serial")
+public final class FeedbackQueueStatsServlet extends HttpServlet {
+
+  private UserService userService;
+  private FeedbackQueue feedbackQueue;
+
+  @Override
+  public void init() {
+    this.userService = UserServiceFactory.getUserService();
+    this.feedbackQueue = FeedbackQueue.getDefault();
+  }
+
+  @VisibleForTesting
+  void init(UserService service, FeedbackQueue queue) {
+    this.userService = service;
+    this.feedbackQueue = queue;
+  }
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN, "Only admins may view queue stats.");
+      return;
+    }
+    response.setContentType("application/json");
+    response.getWriter().write(new Gson().toJson(feedbackQueue.stats()));
+  }
+}
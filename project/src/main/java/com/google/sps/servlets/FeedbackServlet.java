@@ -22,7 +22,7 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import com.google.sps.data.DataAccessor;
+import com.google.sps.data.FeedbackQueue;
 import com.google.sps.data.UserFeedback;
 import com.google.sps.data.UserVerifier;
 import com.google.common.annotations.VisibleForTesting;
@@ -34,18 +34,18 @@ import com.google.common.collect.ImmutableList;
 public final class FeedbackServlet extends HttpServlet {
 
   private UserVerifier userVerifier;
-  private DataAccessor dataAccessor;
+  private FeedbackQueue feedbackQueue;
 
   @Override
   public void init() {
     this.userVerifier = UserVerifier.create(System.getenv("CLIENT_ID"));
-    this.dataAccessor = new DataAccessor();
+    this.feedbackQueue = FeedbackQueue.getDefault();
   }
 
   @VisibleForTesting
-  void init(UserVerifier verifier, DataAccessor accessor) {
+  void init(UserVerifier verifier, FeedbackQueue queue) {
     this.userVerifier = verifier;
-    this.dataAccessor = accessor;
+    this.feedbackQueue = queue;
   }
 
   @Override
@@ -65,7 +65,9 @@ public final class FeedbackServlet extends HttpServlet {
       if (!isNullOrEmpty(chosenPlace)) {
         feedback.setChosenPlace(chosenPlace);
       }
-      dataAccessor.updateUserFeedback(feedback.build());
+      // The response doesn't depend on the write, so the feedback is queued to be written later,
+      // unless the queue writes through.
+      feedbackQueue.submit(feedback.build());
     } catch (IllegalArgumentException e) {
         response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid user feedback input.");
     }
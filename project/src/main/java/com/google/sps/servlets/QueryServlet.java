@@ -17,18 +17,24 @@ package com.google.sps.servlets;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import com.google.sps.data.FetcherException;
+import com.google.sps.data.FilterSpec;
 import com.google.sps.data.GeoContext;
 import com.google.sps.data.Place;
 import com.google.sps.data.Places;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.maps.model.LatLng;
 import com.google.sps.data.PlacesFetcher;
@@ -48,6 +54,10 @@ public final class QueryServlet extends HttpServlet {
 
   @VisibleForTesting
   static final int MAX_NUM_PLACES_TO_RECOMMEND = 3;
+  // The number of places beyond MAX_NUM_PLACES_TO_RECOMMEND that should pass the filter, so that
+  // the scorer still has places to choose from. The details of the other places aren't fetched.
+  @VisibleForTesting
+  static final int FETCH_SAFETY_MARGIN = 5;
   private PlacesFetcher fetcher;
   private PlacesScorer scorer;
   private UserVerifier userVerifier;
@@ -76,6 +86,9 @@ public final class QueryServlet extends HttpServlet {
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     ImmutableList<Place> filteredPlaces;
     UserPreferences userPrefs;
+    // The durations from the places to the user, which are calculated while the places' details
+    // are fetched.
+    List<CompletableFuture<ImmutableMap<String, Long>>> pendingDurations = new ArrayList<>();
     String cuisines = request.getParameter("cuisines");
     try {
       userPrefs =
@@ -89,12 +102,20 @@ public final class QueryServlet extends HttpServlet {
               .build();
       String userIdToken = request.getParameter("idToken");
       storePreferences(userIdToken, userPrefs);
-      filteredPlaces = Places.filter(
-          fetcher.fetch(userPrefs) /* places */,
-          Integer.parseInt(request.getParameter("rating")) /* approximate minimum rating */,
-          true /* filter if no website */,
-          true /* filter branches of same place */
-      );
+      // The fetcher applies the filter to every batch of fetched places, so it's built once.
+      FilterSpec filterSpec = FilterSpec.builder()
+          .setApproxMinRating(Integer.parseInt(request.getParameter("rating")))
+          .setFilterIfNoWebsite(true)
+          .setFilterBranchesOfSamePlace(true)
+          .build();
+      LatLng userLocation = userPrefs.location();
+      filteredPlaces = fetcher.fetch(
+          userPrefs,
+          filterSpec::apply,
+          MAX_NUM_PLACES_TO_RECOMMEND,
+          FETCH_SAFETY_MARGIN,
+          candidates ->
+              pendingDurations.add(scorer.prefetchDurations(candidates, userLocation)));
     } catch (FetcherException e) {
       response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
           "Fetching from Google Places API encountered a problem");
@@ -106,13 +127,25 @@ public final class QueryServlet extends HttpServlet {
     }
     response.setContentType("application/json");
     response.getWriter().write(new Gson().toJson(
-      Places.scoreSort(filteredPlaces, userPrefs.location(), scorer)
-          .stream()
-          .limit(MAX_NUM_PLACES_TO_RECOMMEND)
-          .collect(Collectors.toList())
+      Places.scoreSortTop(
+          filteredPlaces,
+          userPrefs.location(),
+          scorer,
+          awaitDurations(pendingDurations),
+          MAX_NUM_PLACES_TO_RECOMMEND)
     ));
   }
 
+  // Waits for the durations that were calculated while the places' details were fetched.
+  private static ImmutableMap<String, Long> awaitDurations(
+      List<CompletableFuture<ImmutableMap<String, Long>>> pendingDurations) {
+    Map<String, Long> durations = new HashMap<>();
+    for (CompletableFuture<ImmutableMap<String, Long>> pending : pendingDurations) {
+      durations.putAll(pending.join());
+    }
+    return ImmutableMap.copyOf(durations);
+  }
+
   private static LatLng getLatLngFromString(String coordinates) {
     String[] latLng = coordinates.split(",");
     return new LatLng(Double.parseDouble(latLng[0]), Double.parseDouble(latLng[1]));
@@ -49,10 +49,7 @@ public final class RegistrationServlet extends HttpServlet {
     Optional<String> optionalUserId = TokenValidator.validateAndGetId(
           request, response, userVerifier, "registartion" /* validationPurpose */);
     if (optionalUserId.isPresent()) {
-      String finalUserId = optionalUserId.get();
-      if (!dataAccessor.isRegistered(finalUserId)) {
-        dataAccessor.registerUser(finalUserId);
-      }
+      dataAccessor.registerUserIfAbsent(optionalUserId.get());
     }
   }
 }
@@ -18,10 +18,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
@@ -29,16 +36,23 @@ import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.datastore.Query.Filter;
 import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Transaction;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Optional;
 import com.google.maps.model.LatLng;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.AdditionalAnswers;
+import org.mockito.ArgumentMatchers;
 
 @RunWith(JUnit4.class)
 public final class DataAccessorTest {
@@ -57,6 +71,9 @@ public final class DataAccessorTest {
   // The tested dataAccessor, which will be initialized with a datastore service instance.
   private DataAccessor dataAccessor;
 
+  // The store that the tested dataAccessor uses, for the maintenance operations that only it has.
+  private DatastoreUserDataStore dataStore;
+
   private static final String USER_ID = "12345";
   private static final String PLACE_ID_1 = "place1";
   private static final String PLACE_ID_2 = "place2";
@@ -65,7 +82,8 @@ public final class DataAccessorTest {
   @Before
   public void setUp() {
     helper.setUp();
-    dataAccessor = new DataAccessor(datastoreService);
+    dataStore = new DatastoreUserDataStore(datastoreService);
+    dataAccessor = new DataAccessor(dataStore);
   }
 
   @After
@@ -73,9 +91,25 @@ public final class DataAccessorTest {
     helper.tearDown();
   }
 
+  @Test
+  public void createDataStore_memory_inMemoryStore() {
+    assertTrue(DataAccessor.createDataStore("memory", null) instanceof InMemoryUserDataStore);
+  }
+
+  @Test
+  public void createDataStore_logWithoutDir_throwIllegalArgumentException() {
+    assertThrows(IllegalArgumentException.class, () -> DataAccessor.createDataStore("log", null));
+  }
+
+  @Test
+  public void createDataStore_unknownType_throwIllegalArgumentException() {
+    assertThrows(IllegalArgumentException.class,
+        () -> DataAccessor.createDataStore("unknown", null));
+  }
+
   @Test
   public void isRegistered_registered_true() {
-    Entity userEntity = new Entity(DataAccessor.USER_ENTITY_KIND, USER_ID);
+    Entity userEntity = new Entity(DatastoreUserDataStore.USER_ENTITY_KIND, USER_ID);
     datastoreService.put(userEntity);
 
     assertTrue(dataAccessor.isRegistered(USER_ID));
@@ -85,7 +119,7 @@ public final class DataAccessorTest {
   public void isRegistered_notRegistered_false() {
     String registeredUserId = "12345";
     String unRegisteredUserId = "54321";
-    Entity userEntity = new Entity(DataAccessor.USER_ENTITY_KIND, registeredUserId);
+    Entity userEntity = new Entity(DatastoreUserDataStore.USER_ENTITY_KIND, registeredUserId);
     datastoreService.put(userEntity);
 
     assertFalse(dataAccessor.isRegistered(unRegisteredUserId));
@@ -108,7 +142,7 @@ public final class DataAccessorTest {
         .asList(FetchOptions.Builder.withDefaults());
 
     assertEquals(1, results.size());
-    assertEquals(new Entity(DataAccessor.USER_ENTITY_KIND, USER_ID), results.get(0));
+    assertEquals(new Entity(DatastoreUserDataStore.USER_ENTITY_KIND, USER_ID), results.get(0));
   }
 
   @Test
@@ -130,24 +164,51 @@ public final class DataAccessorTest {
     assertThrows(IllegalArgumentException.class, () -> dataAccessor.registerUser(USER_ID));
   }
 
+  @Test
+  public void registerUserIfAbsent_notRegistered_registersUser() {
+    assertTrue(dataAccessor.registerUserIfAbsent(USER_ID));
+
+    assertEquals(1, createPreparedQueryByUserIdKey(USER_ID)
+        .countEntities(FetchOptions.Builder.withDefaults()));
+  }
+
+  @Test
+  public void registerUserIfAbsent_registeredByAnotherAccessor_false() {
+    new DataAccessor(datastoreService).registerUser(USER_ID);
+
+    assertFalse(dataAccessor.registerUserIfAbsent(USER_ID));
+  }
+
+  @Test
+  public void isRegistered_repeatedSignIns_datastoreAccessedOnce() throws Exception {
+    datastoreService.put(new Entity(DatastoreUserDataStore.USER_ENTITY_KIND, USER_ID));
+    DatastoreService spiedDatastore =
+        mock(DatastoreService.class, AdditionalAnswers.delegatesTo(datastoreService));
+    DataAccessor cachingDataAccessor = new DataAccessor(spiedDatastore);
+
+    assertTrue(cachingDataAccessor.isRegistered(USER_ID));
+    assertTrue(cachingDataAccessor.isRegistered(USER_ID));
+    assertFalse(cachingDataAccessor.registerUserIfAbsent(USER_ID));
+
+    verify(spiedDatastore).get(any(Key.class));
+    verify(spiedDatastore, never()).beginTransaction();
+  }
+
   @Test
   public void updateUserFeedback_userChosePlace_updateFeedback() {
-    String chosenPlace = PLACE_ID_1;
-    ImmutableList<String> places = ImmutableList.of(chosenPlace, PLACE_ID_2, PLACE_ID_3);
+    String chosenPlace = PLACE_ID_2;
+    ImmutableList<String> places = ImmutableList.of(PLACE_ID_1, chosenPlace, PLACE_ID_3);
 
     dataAccessor.updateUserFeedback(
         buildUserFeedback(USER_ID, chosenPlace, places, /* tried again*/ false));
 
-    List<Entity> results = fetchRecommendationEntitiesByUserId(USER_ID);
-    assertEquals(places.size(), results.size()); // An entity for each place.
-    for (Entity entity : results) {
-      String placeId = (String) entity.getProperty(DataAccessor.PLACE_ID_PROPERTY);
-      assertTrue(places.contains(placeId));
-      assertFalse((boolean) entity.getProperty(DataAccessor.TRY_AGAIN_PROPERTY));
-      if (placeId == chosenPlace) {
-        assertTrue((boolean) entity.getProperty(DataAccessor.CHOSEN_PROPERTY));
-      }
-    }
+    List<Entity> results = fetchFeedbackEntitiesByUserId(USER_ID);
+    assertEquals(1, results.size()); // A single entity for all the places.
+    Entity entity = results.get(0);
+    assertEquals(places, entity.getProperty(DatastoreUserDataStore.PLACE_ID_PROPERTY));
+    assertEquals(1L, entity.getProperty(DatastoreUserDataStore.CHOSEN_INDEX_PROPERTY));
+    assertFalse((boolean) entity.getProperty(DatastoreUserDataStore.TRY_AGAIN_PROPERTY));
+    assertEquals(0, fetchRecommendationEntitiesByUserId(USER_ID).size());
   }
 
   @Test
@@ -157,12 +218,30 @@ public final class DataAccessorTest {
     dataAccessor.updateUserFeedback(
         buildUserFeedback(USER_ID, /*chosen place*/ null, places, /*tried again*/ true));
 
-    List<Entity> results = fetchRecommendationEntitiesByUserId(USER_ID);
-    assertEquals(places.size(), results.size()); // An entity for each place.
-    for (Entity entity : results) {
-      assertTrue(places.contains((String) entity.getProperty(DataAccessor.PLACE_ID_PROPERTY)));
-      assertTrue((boolean) entity.getProperty(DataAccessor.TRY_AGAIN_PROPERTY));
-    }
+    List<Entity> results = fetchFeedbackEntitiesByUserId(USER_ID);
+    assertEquals(1, results.size());
+    Entity entity = results.get(0);
+    assertEquals(places, entity.getProperty(DatastoreUserDataStore.PLACE_ID_PROPERTY));
+    assertEquals(
+        DatastoreUserDataStore.NO_CHOSEN_INDEX,
+        entity.getProperty(DatastoreUserDataStore.CHOSEN_INDEX_PROPERTY));
+    assertTrue((boolean) entity.getProperty(DatastoreUserDataStore.TRY_AGAIN_PROPERTY));
+  }
+
+  @Test
+  public void updateUserFeedback_severalPlaces_writtenAsSingleEntity() {
+    // The local datastore service is a final class, so it can't be spied directly.
+    DatastoreService spiedDatastore =
+        mock(DatastoreService.class, AdditionalAnswers.delegatesTo(datastoreService));
+    DataAccessor spiedDataAccessor = new DataAccessor(spiedDatastore);
+    ImmutableList<String> places = ImmutableList.of(PLACE_ID_1, PLACE_ID_2, PLACE_ID_3);
+
+    spiedDataAccessor.updateUserFeedback(
+        buildUserFeedback(USER_ID, PLACE_ID_1, places, /* tried again*/ false));
+
+    verify(spiedDatastore).put(any(Entity.class));
+    verify(spiedDatastore, never()).put(ArgumentMatchers.<Iterable<Entity>>any());
+    assertEquals(1, fetchFeedbackEntitiesByUserId(USER_ID).size());
   }
 
   @Test
@@ -232,6 +311,245 @@ public final class DataAccessorTest {
     assertTrue(results.contains(PLACE_ID_1));
   }
 
+  @Test
+  public void streamPlacesRecommendedToUser_smallBatches_getDistinctPlacesOfUser() {
+    for (int i = 0; i < 5; i++) {
+      datastoreService.put(createRecommendationEntity(
+          USER_ID, PLACE_ID_1, /* chosen */ i == 0, /* tryAgain */ false));
+      datastoreService.put(createRecommendationEntity(
+          USER_ID, PLACE_ID_2, /* chosen */ false, /* tryAgain */ false));
+    }
+    datastoreService.put(createRecommendationEntity(
+        USER_ID, PLACE_ID_3, /* chosen */ true, /* tryAgain */ false));
+    datastoreService.put(createRecommendationEntity(
+        "54321", PLACE_ID_2, /* chosen */ true, /* tryAgain */ false));
+
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1, PLACE_ID_2, PLACE_ID_3),
+        dataStore.streamPlacesRecommendedToUser(USER_ID, /* onlyChosen */ false, 2)
+            .sorted()
+            .collect(ImmutableList.toImmutableList()));
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1, PLACE_ID_3),
+        dataStore.streamPlacesRecommendedToUser(USER_ID, /* onlyChosen */ true, 1)
+            .sorted()
+            .collect(ImmutableList.toImmutableList()));
+  }
+
+  @Test
+  public void streamPlacesRecommendedToUser_bothLayouts_getPlacesOfBoth() {
+    datastoreService.put(createRecommendationEntity(
+        USER_ID, PLACE_ID_1, /* chosen */ true, /* tryAgain */ false));
+    datastoreService.put(createRecommendationEntity(
+        USER_ID, PLACE_ID_2, /* chosen */ false, /* tryAgain */ false));
+    Entity feedback = new Entity(DatastoreUserDataStore.FEEDBACK_ENTITY_KIND);
+    feedback.setProperty(DatastoreUserDataStore.USER_ID_PROPERTY, USER_ID);
+    feedback.setProperty(
+        DatastoreUserDataStore.PLACE_ID_PROPERTY,
+        ImmutableList.of(PLACE_ID_2, PLACE_ID_3, PLACE_ID_1));
+    feedback.setProperty(DatastoreUserDataStore.CHOSEN_INDEX_PROPERTY, 1L);
+    feedback.setProperty(DatastoreUserDataStore.CHOSEN_PLACE_ID_PROPERTY, PLACE_ID_3);
+    datastoreService.put(feedback);
+
+    // The places of both kinds are merged in ascending order, without duplicates.
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1, PLACE_ID_2, PLACE_ID_3),
+        dataStore.streamPlacesRecommendedToUser(USER_ID, /* onlyChosen */ false, 1)
+            .collect(ImmutableList.toImmutableList()));
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1, PLACE_ID_3),
+        dataStore.streamPlacesRecommendedToUser(USER_ID, /* onlyChosen */ true, 1)
+            .collect(ImmutableList.toImmutableList()));
+  }
+
+  @Test
+  public void migrateRecommendationsToFeedback_splitAcrossPages_singleFeedbackEntity() {
+    long time = 1000;
+    ImmutableList<String> places = ImmutableList.of(PLACE_ID_1, PLACE_ID_2, PLACE_ID_3);
+    for (String place : places) {
+      Entity recommendation = createRecommendationEntity(
+          USER_ID, place, /* chosen */ place.equals(PLACE_ID_3), /* tryAgain */ false);
+      recommendation.setProperty(DatastoreUserDataStore.TIME_PROPERTY, time);
+      datastoreService.put(recommendation);
+    }
+    Entity otherRecommendation = createRecommendationEntity(
+        "54321", PLACE_ID_1, /* chosen */ false, /* tryAgain */ true);
+    otherRecommendation.setProperty(DatastoreUserDataStore.TIME_PROPERTY, time);
+    datastoreService.put(otherRecommendation);
+
+    Optional<Cursor> cursor = Optional.empty();
+    do {
+      cursor = dataStore.migrateRecommendationsToFeedback(cursor, /* pageSize */ 2);
+    } while (cursor.isPresent());
+    // Running the migration again doesn't change anything.
+    dataStore.migrateRecommendationsToFeedback(Optional.empty(), /* pageSize */ 2);
+
+    assertEquals(0, fetchRecommendationEntitiesByUserId(USER_ID).size());
+    List<Entity> feedbacks = fetchFeedbackEntitiesByUserId(USER_ID);
+    assertEquals(1, feedbacks.size());
+    assertEquals(
+        ImmutableSet.copyOf(places),
+        ImmutableSet.copyOf(
+            (List<?>) feedbacks.get(0).getProperty(DatastoreUserDataStore.PLACE_ID_PROPERTY)));
+    assertEquals(
+        ImmutableList.of(PLACE_ID_3),
+        dataAccessor.getPlacesRecommendedToUser(USER_ID, /* onlyChosen */ true));
+    assertEquals(1, fetchFeedbackEntitiesByUserId("54321").size());
+  }
+
+  @Test
+  public void streamPlacesRecommendedToUser_nonPositiveBatchSize_throwIllegalArgumentException() {
+    assertThrows(IllegalArgumentException.class,
+        () -> dataStore.streamPlacesRecommendedToUser(USER_ID, false, 0));
+  }
+
+  @Test
+  public void getUserPlacesHistory_afterFeedbacks_readFromHistoryWithoutQuery() {
+    dataAccessor.updateUserFeedback(buildUserFeedback(
+        USER_ID, PLACE_ID_1, ImmutableList.of(PLACE_ID_1, PLACE_ID_2), /* tried again*/ false));
+    dataAccessor.updateUserFeedback(buildUserFeedback(
+        USER_ID, PLACE_ID_3, ImmutableList.of(PLACE_ID_2, PLACE_ID_3), /* tried again*/ false));
+    DatastoreService spiedDatastore =
+        mock(DatastoreService.class, AdditionalAnswers.delegatesTo(datastoreService));
+    DataAccessor historyDataAccessor = new DataAccessor(spiedDatastore);
+
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1, PLACE_ID_2, PLACE_ID_3),
+        historyDataAccessor.getPlacesRecommendedToUser(USER_ID, /* onlyChosen */ false));
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1, PLACE_ID_3),
+        historyDataAccessor.getPlacesRecommendedToUser(USER_ID, /* onlyChosen */ true));
+    verify(spiedDatastore, never()).prepare(any(Query.class));
+  }
+
+  @Test
+  public void getUserPlacesHistory_firstFeedbackAfterOldRecommendations_oldPlacesKept() {
+    datastoreService.put(createRecommendationEntity(
+        USER_ID, PLACE_ID_1, /* chosen */ true, /* tryAgain */ false));
+    datastoreService.put(createRecommendationEntity(
+        USER_ID, PLACE_ID_2, /* chosen */ false, /* tryAgain */ false));
+
+    dataAccessor.updateUserFeedback(buildUserFeedback(
+        USER_ID, /* chosen place */ null, ImmutableList.of(PLACE_ID_3), /* tried again*/ false));
+
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1, PLACE_ID_2, PLACE_ID_3),
+        dataAccessor.getPlacesRecommendedToUser(USER_ID, /* onlyChosen */ false));
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1),
+        dataAccessor.getPlacesRecommendedToUser(USER_ID, /* onlyChosen */ true));
+  }
+
+  @Test
+  public void updateUserFeedback_historyMissingAndQueriesStale_historyStartsWithRecentFeedbacks() {
+    // Global queries see none of the writes, as if their indexes weren't updated yet.
+    helper.tearDown();
+    LocalServiceTestHelper staleQueriesHelper = new LocalServiceTestHelper(
+        new LocalDatastoreServiceTestConfig()
+            .setDefaultHighRepJobPolicyUnappliedJobPercentage(100));
+    staleQueriesHelper.setUp();
+    try {
+      dataAccessor.updateUserFeedback(buildUserFeedback(
+          USER_ID, PLACE_ID_1, ImmutableList.of(PLACE_ID_1), /* tried again*/ false));
+      datastoreService.delete(
+          KeyFactory.createKey(DatastoreUserDataStore.USER_HISTORY_ENTITY_KIND, USER_ID));
+
+      dataAccessor.updateUserFeedback(buildUserFeedback(
+          USER_ID, /* chosen place */ null, ImmutableList.of(PLACE_ID_2), /* tried again*/ true));
+
+      assertEquals(
+          ImmutableList.of(PLACE_ID_1, PLACE_ID_2),
+          dataAccessor.getPlacesRecommendedToUser(USER_ID, /* onlyChosen */ false));
+      assertEquals(
+          ImmutableList.of(PLACE_ID_1),
+          dataAccessor.getPlacesRecommendedToUser(USER_ID, /* onlyChosen */ true));
+    } finally {
+      staleQueriesHelper.tearDown();
+      helper.setUp();
+    }
+  }
+
+  @Test
+  public void updateUserFeedback_moreThanMaxHistorySize_leastRecentPlacesDropped() {
+    List<String> places = new ArrayList<>();
+    for (int i = 0; i <= DatastoreUserDataStore.MAX_HISTORY_SIZE; i++) {
+      places.add("place" + i);
+    }
+    dataAccessor.updateUserFeedback(buildUserFeedback(
+        USER_ID, /* chosen place */ null, ImmutableList.copyOf(places), /* tried again*/ true));
+    // A place that's recommended again is the most recent one.
+    dataAccessor.updateUserFeedback(buildUserFeedback(
+        USER_ID, PLACE_ID_1, ImmutableList.of(PLACE_ID_1), /* tried again*/ false));
+
+    ImmutableList<String> history =
+        dataAccessor.getPlacesRecommendedToUser(USER_ID, /* onlyChosen */ false);
+    assertEquals(DatastoreUserDataStore.MAX_HISTORY_SIZE, history.size());
+    assertEquals("place2", history.get(0));
+    assertEquals(PLACE_ID_1, history.get(history.size() - 1));
+  }
+
+  @Test
+  public void updateUserFeedback_historyUpdatesKeepConflicting_historyRebuilt() {
+    DatastoreService conflictingDatastore =
+        mock(DatastoreService.class, AdditionalAnswers.delegatesTo(datastoreService));
+    doThrow(new ConcurrentModificationException())
+        .when(conflictingDatastore).put(any(Transaction.class), any(Entity.class));
+    dataAccessor.updateUserFeedback(buildUserFeedback(
+        USER_ID, PLACE_ID_1, ImmutableList.of(PLACE_ID_1), /* tried again*/ false));
+
+    new DataAccessor(conflictingDatastore).updateUserFeedback(buildUserFeedback(
+        USER_ID, /* chosen place */ null, ImmutableList.of(PLACE_ID_2), /* tried again*/ true));
+
+    assertThrows(EntityNotFoundException.class, () -> datastoreService.get(
+        KeyFactory.createKey(DatastoreUserDataStore.USER_HISTORY_ENTITY_KIND, USER_ID)));
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1, PLACE_ID_2),
+        dataAccessor.getPlacesRecommendedToUser(USER_ID, /* onlyChosen */ false));
+    dataAccessor.updateUserFeedback(buildUserFeedback(
+        USER_ID, PLACE_ID_3, ImmutableList.of(PLACE_ID_3), /* tried again*/ false));
+    assertEquals(
+        ImmutableSet.of(PLACE_ID_1, PLACE_ID_2, PLACE_ID_3),
+        ImmutableSet.copyOf((List<?>) getUserHistory(USER_ID)
+            .getProperty(DatastoreUserDataStore.RECOMMENDED_PLACE_IDS_PROPERTY)));
+  }
+
+  @Test
+  public void backfillUserHistories_existingRecommendations_addedToHistories() {
+    String otherUserId = "54321";
+    datastoreService.put(createRecommendationEntity(
+        USER_ID, PLACE_ID_1, /* chosen */ true, /* tryAgain */ false));
+    datastoreService.put(createRecommendationEntity(
+        USER_ID, PLACE_ID_2, /* chosen */ false, /* tryAgain */ false));
+    datastoreService.put(createRecommendationEntity(
+        USER_ID, PLACE_ID_1, /* chosen */ false, /* tryAgain */ false));
+    datastoreService.put(createRecommendationEntity(
+        otherUserId, PLACE_ID_3, /* chosen */ false, /* tryAgain */ false));
+
+    Optional<Cursor> cursor = Optional.empty();
+    int numOfPages = 0;
+    do {
+      cursor = dataStore.backfillUserHistories(cursor, /* pageSize */ 3);
+      numOfPages++;
+    } while (cursor.isPresent());
+
+    assertEquals(2, numOfPages);
+    Entity history = getUserHistory(USER_ID);
+    assertEquals(
+        ImmutableSet.of(PLACE_ID_1, PLACE_ID_2),
+        ImmutableSet.copyOf(
+            (List<?>) history.getProperty(DatastoreUserDataStore.RECOMMENDED_PLACE_IDS_PROPERTY)));
+    assertEquals(
+        ImmutableList.of(PLACE_ID_1),
+        history.getProperty(DatastoreUserDataStore.CHOSEN_PLACE_IDS_PROPERTY));
+    assertEquals(
+        ImmutableList.of(PLACE_ID_3),
+        getUserHistory(otherUserId)
+            .getProperty(DatastoreUserDataStore.RECOMMENDED_PLACE_IDS_PROPERTY));
+    assertEquals(
+        null,
+        getUserHistory(otherUserId).getProperty(DatastoreUserDataStore.CHOSEN_PLACE_IDS_PROPERTY));
+  }
+
   @Test
   public void storeUserPreferences_validUserIdAndPreferences_userPreferencesStored() {
     dataAccessor.storeUserPreferences(
@@ -263,18 +581,26 @@ public final class DataAccessorTest {
 
   private Entity createRecommendationEntity(String userId, String placeId, boolean chosen,
   boolean tryAgain) {
-    Entity recommendationEntity = new Entity(DataAccessor.RECOMMENDATION_ENTITY_KIND);
-    recommendationEntity.setProperty(DataAccessor.USER_ID_PROPERTY, userId);
-    recommendationEntity.setProperty(DataAccessor.PLACE_ID_PROPERTY, placeId);
-    recommendationEntity.setProperty(DataAccessor.TIME_PROPERTY, System.currentTimeMillis());
-    recommendationEntity.setProperty(DataAccessor.TRY_AGAIN_PROPERTY, tryAgain);
-    recommendationEntity.setProperty(DataAccessor.CHOSEN_PROPERTY, chosen);
+    Entity recommendationEntity = new Entity(DatastoreUserDataStore.RECOMMENDATION_ENTITY_KIND);
+    recommendationEntity.setProperty(DatastoreUserDataStore.USER_ID_PROPERTY, userId);
+    recommendationEntity.setProperty(DatastoreUserDataStore.PLACE_ID_PROPERTY, placeId);
+    recommendationEntity.setProperty(
+        DatastoreUserDataStore.TIME_PROPERTY, System.currentTimeMillis());
+    recommendationEntity.setProperty(DatastoreUserDataStore.TRY_AGAIN_PROPERTY, tryAgain);
+    recommendationEntity.setProperty(DatastoreUserDataStore.CHOSEN_PROPERTY, chosen);
     return recommendationEntity;
   }
 
+  private List<Entity> fetchFeedbackEntitiesByUserId(String userId) {
+    return datastoreService.prepare(
+        new Query(DatastoreUserDataStore.FEEDBACK_ENTITY_KIND)
+            .setFilter(new Query.FilterPredicate("UserId", FilterOperator.EQUAL, userId))
+    ).asList(FetchOptions.Builder.withDefaults());
+  }
+
   private List<Entity> fetchRecommendationEntitiesByUserId(String userId) {
     return datastoreService.prepare(
-        new Query(DataAccessor.RECOMMENDATION_ENTITY_KIND)
+        new Query(DatastoreUserDataStore.RECOMMENDATION_ENTITY_KIND)
             .setFilter(new Query.FilterPredicate("UserId", FilterOperator.EQUAL, userId))
     ).asList(FetchOptions.Builder.withDefaults());
   }
@@ -292,14 +618,25 @@ public final class DataAccessorTest {
     return userFeedback.build();
   }
 
+  private Entity getUserHistory(String userId) {
+    try {
+      return datastoreService.get(
+          KeyFactory.createKey(DatastoreUserDataStore.USER_HISTORY_ENTITY_KIND, userId));
+    } catch (EntityNotFoundException e) {
+      throw new AssertionError("No history for user " + userId, e);
+    }
+  }
+
   // Used to query the registered users database
   private PreparedQuery createPreparedQueryByUserIdKey(String userId) {
-    Key userIdKey = KeyFactory.createKey(DataAccessor.USER_ENTITY_KIND, userId);
+    Key userIdKey = KeyFactory.createKey(DatastoreUserDataStore.USER_ENTITY_KIND, userId);
     Filter userIdFilter = new Query.FilterPredicate(
         Entity.KEY_RESERVED_PROPERTY,
         FilterOperator.EQUAL,
         userIdKey);
-    Query query = new Query(DataAccessor.USER_ENTITY_KIND).setFilter(userIdFilter).setKeysOnly();
+    Query query = new Query(DatastoreUserDataStore.USER_ENTITY_KIND)
+        .setFilter(userIdFilter)
+        .setKeysOnly();
     return datastoreService.prepare(query);
   }
 
@@ -309,7 +646,7 @@ public final class DataAccessorTest {
         "userId",
         FilterOperator.EQUAL,
         userId);
-    Query query = new Query(DataAccessor.PREFERNCES_ENTITY_KIND).setFilter(userIdFilter);
+    Query query = new Query(DatastoreUserDataStore.PREFERNCES_ENTITY_KIND).setFilter(userIdFilter);
     return datastoreService.prepare(query);
   }
 
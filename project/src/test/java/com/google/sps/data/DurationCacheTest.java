@@ -0,0 +1,106 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.maps.model.LatLng;
+
+@RunWith(JUnit4.class)
+public final class DurationCacheTest {
+
+  private static final Duration TTL = Duration.ofDays(1);
+  private static final double CELL_SIZE_M = 500;
+  private static final Duration TIME_BUCKET = Duration.ofHours(1);
+  private static final LatLng USER_LOCATION = new LatLng(32.0802, 34.7802);
+
+  private FakeTicker ticker;
+  private FakeClock clock;
+  private DurationCache cache;
+
+  @Before
+  public void setUp() {
+    ticker = new FakeTicker();
+    // 8:10 in the morning, UTC.
+    clock = new FakeClock(Instant.parse("2020-08-20T08:10:00Z"));
+    cache = new DurationCache(
+        100 /* maxNumOfDurations */, TTL, CELL_SIZE_M, TIME_BUCKET, ticker, clock);
+  }
+
+  @Test
+  public void getIfPresent_nearbyUserInSameHour_returnsCachedDuration() {
+    cache.put("placeId", USER_LOCATION, 600);
+
+    advanceTime(Duration.ofMinutes(30));
+
+    assertEquals(
+        Optional.of(600L), cache.getIfPresent("placeId", new LatLng(32.0803, 34.7803)));
+    assertEquals(1.0, cache.stats().hitRate(), 0);
+  }
+
+  @Test
+  public void getIfPresent_differentPlaceOrCell_miss() {
+    cache.put("placeId", USER_LOCATION, 600);
+
+    assertFalse(cache.getIfPresent("otherPlaceId", USER_LOCATION).isPresent());
+    assertFalse(cache.getIfPresent("placeId", new LatLng(32.10, 34.78)).isPresent());
+    assertEquals(0.0, cache.stats().hitRate(), 0);
+  }
+
+  @Test
+  public void getIfPresent_differentHourOfDay_miss() {
+    cache.put("placeId", USER_LOCATION, 600);
+
+    advanceTime(Duration.ofHours(1));
+
+    assertFalse(cache.getIfPresent("placeId", USER_LOCATION).isPresent());
+  }
+
+  @Test
+  public void getIfPresent_afterTtl_miss() {
+    cache.put("placeId", USER_LOCATION, 600);
+
+    advanceTime(TTL);
+
+    assertFalse(cache.getIfPresent("placeId", USER_LOCATION).isPresent());
+  }
+
+  @Test
+  public void getIfPresent_hits_ageOfReturnedDurationsRecorded() {
+    cache.put("placeId", USER_LOCATION, 600);
+
+    advanceTime(Duration.ofMinutes(10));
+    cache.getIfPresent("placeId", USER_LOCATION);
+    advanceTime(Duration.ofMinutes(20));
+    cache.getIfPresent("placeId", USER_LOCATION);
+
+    assertEquals(Duration.ofMinutes(20), cache.averageHitAge());
+    assertEquals(Duration.ofMinutes(30), cache.maxHitAge());
+  }
+
+  // Moves both the ticker and the clock forward.
+  private void advanceTime(Duration duration) {
+    ticker.advance(duration);
+    clock.advance(duration);
+  }
+}
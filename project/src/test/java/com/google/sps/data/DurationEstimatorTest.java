@@ -0,0 +1,64 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.common.collect.ImmutableList;
+import com.google.maps.model.LatLng;
+
+@RunWith(JUnit4.class)
+public final class DurationEstimatorTest {
+
+  private static final DurationEstimator.Config DEFAULT_CONFIG =
+      DurationEstimator.Config.create(5 /* topK */, 30 /* speedKmh */, 1.3 /* detourFactor */);
+  // 36 kilometers per hour are 10 meters per second.
+  private static final DurationEstimator.Config REGION_CONFIG =
+      DurationEstimator.Config.create(3 /* topK */, 36 /* speedKmh */, 1 /* detourFactor */);
+  private static final DurationEstimator.Region REGION =
+      DurationEstimator.Region.create(new LatLng(0, 0), new LatLng(2, 2), REGION_CONFIG);
+  private static final DurationEstimator ESTIMATOR =
+      DurationEstimator.create(DEFAULT_CONFIG, ImmutableList.of(REGION));
+
+  @Test
+  public void configFor_locationInRegion_returnsRegionConfig() {
+    assertEquals(REGION_CONFIG, ESTIMATOR.configFor(new LatLng(1, 1)));
+  }
+
+  @Test
+  public void configFor_locationOutsideRegions_returnsDefaultConfig() {
+    assertEquals(DEFAULT_CONFIG, ESTIMATOR.configFor(new LatLng(32.08, 34.78)));
+  }
+
+  @Test
+  public void estimateSeconds_oneDegreeOfLatitude_usesDestinationRegionSpeed() {
+    // A degree of latitude is about 111195 meters.
+    assertEquals(11120, ESTIMATOR.estimateSeconds(new LatLng(0, 1), new LatLng(1, 1)));
+  }
+
+  @Test
+  public void configCreate_invalidValues_throwIllegalArgumentException() {
+    assertThrows(
+        IllegalArgumentException.class, () -> DurationEstimator.Config.create(0, 30, 1.3));
+    assertThrows(
+        IllegalArgumentException.class, () -> DurationEstimator.Config.create(5, 0, 1.3));
+    assertThrows(
+        IllegalArgumentException.class, () -> DurationEstimator.Config.create(5, 30, 0.5));
+  }
+}
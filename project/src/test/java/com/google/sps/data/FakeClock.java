@@ -0,0 +1,65 @@
+package com.google.sps.data;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A Clock whose time only moves forward when it is advanced by the test. It's in UTC, and the
+ * clocks that withZone returns share its time, so advancing any of them advances all of them.
+ */
+public class FakeClock extends Clock {
+
+    // The current time of the clock, which is shared with the clocks in other zones.
+    private final AtomicReference<Instant> instant;
+
+    private final ZoneId zone;
+
+    /**
+     * @param instant the initial time of the clock
+     */
+    public FakeClock(Instant instant) {
+        this(new AtomicReference<>(instant), ZoneOffset.UTC);
+    }
+
+    private FakeClock(AtomicReference<Instant> instant, ZoneId zone) {
+        this.instant = instant;
+        this.zone = zone;
+    }
+
+    /**
+     * Moves the time of the clock forward.
+     *
+     * @param duration the amount of time to move forward
+     */
+    public void advance(Duration duration) {
+        instant.updateAndGet(current -> current.plus(duration));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Instant instant() {
+        return instant.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new FakeClock(instant, zone);
+    }
+}
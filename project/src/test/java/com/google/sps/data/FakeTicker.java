@@ -0,0 +1,29 @@
+package com.google.sps.data;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A Ticker whose time only moves forward when it is advanced by the test. */
+public class FakeTicker extends Ticker {
+
+    // The current time of the ticker, in nanoseconds.
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * Moves the time of the ticker forward.
+     *
+     * @param duration the amount of time to move forward
+     */
+    public void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long read() {
+        return nanos.get();
+    }
+}
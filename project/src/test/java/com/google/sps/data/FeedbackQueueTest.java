@@ -0,0 +1,243 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.sps.data.InMemoryUserDataStoreTest.buildFeedback;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.sps.data.FeedbackQueue.Durability;
+
+@RunWith(JUnit4.class)
+public final class FeedbackQueueTest {
+
+  // Long enough that batches in tests are only flushed by their size, unless a test waits for it.
+  private static final long LONG_DELAY_MILLIS = 60000;
+  private static final long SHORT_DELAY_MILLIS = 20;
+  private static final long VERIFY_TIMEOUT_MILLIS = 5000;
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path spillFile;
+  private DataAccessor mockDataAccessor;
+  // The feedbacks that were written by the mock data accessor.
+  private final List<UserFeedback> written = new CopyOnWriteArrayList<>();
+  private FeedbackQueue feedbackQueue;
+
+  @Before
+  public void setUp() {
+    spillFile = folder.getRoot().toPath().resolve("feedback.spill");
+    mockDataAccessor = mock(DataAccessor.class);
+    doAnswer(invocation -> written.addAll(invocation.getArgument(0)))
+        .when(mockDataAccessor).updateUserFeedbacks(anyList());
+  }
+
+  @After
+  public void tearDown() {
+    if (feedbackQueue != null) {
+      feedbackQueue.close();
+    }
+  }
+
+  @Test
+  public void submit_writeThrough_writtenBeforeReturning() throws IOException {
+    feedbackQueue = createQueue(Durability.WRITE_THROUGH, 10, 10, LONG_DELAY_MILLIS);
+    UserFeedback feedback = buildFeedback("12345", "place1", "place1");
+
+    feedbackQueue.submit(feedback);
+
+    verify(mockDataAccessor).updateUserFeedback(feedback);
+  }
+
+  @Test
+  public void create_writeThrough_noFlusherOrSpillFile() throws IOException {
+    spillFile = folder.getRoot().toPath().resolve("spill").resolve("feedback.spill");
+    Set<Thread> threadsBefore = Thread.getAllStackTraces().keySet();
+
+    feedbackQueue = createQueue(Durability.WRITE_THROUGH, 10, 10, LONG_DELAY_MILLIS);
+
+    assertTrue(Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> !threadsBefore.contains(thread))
+        .noneMatch(thread -> thread.getName().equals(FeedbackQueue.FLUSHER_THREAD_NAME)));
+    assertFalse(Files.exists(spillFile.getParent()));
+  }
+
+  @Test
+  public void submit_fullBatch_flushedAsSingleBatch() throws IOException {
+    feedbackQueue = createQueue(Durability.WRITE_BEHIND, 10, 3, LONG_DELAY_MILLIS);
+    ImmutableList<UserFeedback> feedbacks = ImmutableList.of(
+        buildFeedback("1", "place1", "place1"),
+        buildFeedback("2", "place2", "place2"),
+        buildFeedback("3", "place3", "place3"));
+
+    feedbacks.forEach(feedbackQueue::submit);
+
+    verify(mockDataAccessor, timeout(VERIFY_TIMEOUT_MILLIS)).updateUserFeedbacks(feedbacks);
+    verify(mockDataAccessor, never()).updateUserFeedback(feedbacks.get(0));
+  }
+
+  @Test
+  public void submit_partialBatch_flushedAfterDelay() throws IOException {
+    feedbackQueue = createQueue(Durability.WRITE_BEHIND, 10, 100, SHORT_DELAY_MILLIS);
+    UserFeedback feedback = buildFeedback("12345", "place1", "place1");
+
+    feedbackQueue.submit(feedback);
+
+    verify(mockDataAccessor, timeout(VERIFY_TIMEOUT_MILLIS))
+        .updateUserFeedbacks(ImmutableList.of(feedback));
+    assertEquals(1, feedbackQueue.stats().numOfFlushedFeedbacks());
+  }
+
+  @Test
+  public void submit_queueFull_spilledAndWrittenLater() throws Exception {
+    CountDownLatch writesAllowed = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      writesAllowed.await();
+      return written.addAll(invocation.getArgument(0));
+    }).when(mockDataAccessor).updateUserFeedbacks(anyList());
+    feedbackQueue = createQueue(Durability.WRITE_BEHIND, 1, 1, SHORT_DELAY_MILLIS);
+    int numOfFeedbacks = 10;
+
+    for (int i = 0; i < numOfFeedbacks; i++) {
+      feedbackQueue.submit(buildFeedback("user" + i, "place" + i, "place" + i));
+    }
+    // At most one feedback is being written, and one is queued.
+    assertTrue(feedbackQueue.stats().numOfSpilledFeedbacks() >= numOfFeedbacks - 2);
+    writesAllowed.countDown();
+
+    verify(mockDataAccessor, timeout(VERIFY_TIMEOUT_MILLIS).atLeast(numOfFeedbacks))
+        .updateUserFeedbacks(anyList());
+    feedbackQueue.close();
+    assertEquals(numOfFeedbacks, ImmutableSet.copyOf(written).size());
+  }
+
+  @Test
+  public void submit_writeFails_spilledAndReplayedOnStartup() throws IOException {
+    doThrow(new RuntimeException("Datastore is down"))
+        .when(mockDataAccessor).updateUserFeedbacks(anyList());
+    feedbackQueue = createQueue(Durability.WRITE_BEHIND, 10, 1, LONG_DELAY_MILLIS);
+    UserFeedback feedback = buildFeedback("12345", "place1", "place1");
+
+    feedbackQueue.submit(feedback);
+    feedbackQueue.close();
+
+    assertEquals(1, feedbackQueue.stats().numOfFailedFlushes());
+    assertEquals(1, feedbackQueue.stats().numOfSpilledFeedbacks());
+    DataAccessor recoveredDataAccessor = mock(DataAccessor.class);
+    feedbackQueue = new FeedbackQueue(recoveredDataAccessor, spillFile, Durability.WRITE_BEHIND,
+        10, 10, LONG_DELAY_MILLIS);
+    verify(recoveredDataAccessor, timeout(VERIFY_TIMEOUT_MILLIS))
+        .updateUserFeedbacks(ImmutableList.of(feedback));
+  }
+
+  @Test
+  public void flushSpilled_writeAndSpillFail_unwrittenFeedbacksKept() throws IOException {
+    ImmutableList<UserFeedback> feedbacks = ImmutableList.of(
+        buildFeedback("1", "place1", "place1"),
+        buildFeedback("2", "place2", "place2"),
+        buildFeedback("3", "place3", "place3"));
+    FeedbackSpillFile spill = new FeedbackSpillFile(spillFile);
+    spill.append(feedbacks);
+    // Takes the feedbacks as if the process crashed while writing them, and replaces the spill
+    // file with a directory, so that spilling them again fails.
+    spill.take();
+    Files.createDirectory(spillFile);
+    doAnswer(invocation -> written.addAll(invocation.getArgument(0)))
+        .doThrow(new RuntimeException("Datastore is down"))
+        .when(mockDataAccessor).updateUserFeedbacks(anyList());
+
+    feedbackQueue = createQueue(Durability.WRITE_BEHIND, 10, 1, LONG_DELAY_MILLIS);
+    verify(mockDataAccessor, timeout(VERIFY_TIMEOUT_MILLIS).times(2))
+        .updateUserFeedbacks(anyList());
+    feedbackQueue.close();
+
+    assertEquals(feedbacks.subList(0, 1), written);
+    assertEquals(0, feedbackQueue.stats().numOfDroppedFeedbacks());
+    assertEquals(feedbacks.subList(1, 3), spill.take());
+  }
+
+  @Test
+  public void submit_closed_throwIllegalStateException() throws IOException {
+    feedbackQueue = createQueue(Durability.WRITE_BEHIND, 10, 10, LONG_DELAY_MILLIS);
+    feedbackQueue.close();
+
+    assertThrows(IllegalStateException.class,
+        () -> feedbackQueue.submit(buildFeedback("12345", null, "place1")));
+  }
+
+  @Test
+  public void close_queuedFeedbacks_flushed() throws IOException {
+    feedbackQueue = createQueue(Durability.WRITE_BEHIND, 10, 10, LONG_DELAY_MILLIS);
+    UserFeedback feedback = buildFeedback("12345", null, "place1");
+
+    feedbackQueue.submit(feedback);
+    feedbackQueue.close();
+
+    assertEquals(ImmutableList.of(feedback), written);
+    assertEquals(0, feedbackQueue.stats().queueDepth());
+  }
+
+  @Test
+  public void take_tornLastFeedback_earlierFeedbacksKept() throws IOException {
+    FeedbackSpillFile spill = new FeedbackSpillFile(spillFile);
+    UserFeedback feedback = buildFeedback("12345", "place1", "place1", "place2");
+    spill.append(ImmutableList.of(feedback, buildFeedback("54321", null, "place3")));
+    // Truncates the last feedback, as if appending it was interrupted.
+    try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1);
+    }
+
+    assertEquals(ImmutableList.of(feedback), spill.take());
+    // Feedbacks that were taken and not released are taken again.
+    assertEquals(ImmutableList.of(feedback), spill.take());
+    spill.release();
+    assertEquals(ImmutableList.of(), spill.take());
+  }
+
+  private FeedbackQueue createQueue(
+      Durability durability, int capacity, int maxBatchSize, long maxBatchDelayMillis)
+      throws IOException {
+    return new FeedbackQueue(
+        mockDataAccessor, spillFile, durability, capacity, maxBatchSize, maxBatchDelayMillis);
+  }
+}
@@ -0,0 +1,51 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public final class FilterSpecTest {
+
+  @Test
+  public void apply_defaultSpec_filtersOnlyClosedPlaces() {
+    ImmutableList<Place> places = PlaceFixtures.createPlaces(100, new Random(7));
+
+    assertEquals(
+        PlaceFixtures.sortThenFilter(places, 0, false, false),
+        FilterSpec.builder().build().apply(places));
+  }
+
+  @Test
+  public void apply_aboveParallelThreshold_sameAsSequential() {
+    ImmutableList<Place> places = PlaceFixtures.createPlaces(20000, new Random(7));
+    for (boolean filterBranches : new boolean[] {false, true}) {
+      FilterSpec.Builder specBuilder = FilterSpec.builder()
+          .setApproxMinRating(3)
+          .setFilterIfNoWebsite(true)
+          .setFilterBranchesOfSamePlace(filterBranches);
+
+      assertEquals(
+          specBuilder.setParallelThreshold(Integer.MAX_VALUE).build().apply(places),
+          specBuilder.setParallelThreshold(100).build().apply(places));
+    }
+  }
+}
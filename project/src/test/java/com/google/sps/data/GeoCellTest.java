@@ -0,0 +1,58 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.maps.model.LatLng;
+
+@RunWith(JUnit4.class)
+public final class GeoCellTest {
+
+  private static final double CELL_SIZE_M = 500;
+
+  @Test
+  public void of_closeLocations_sameCell() {
+    // The locations are about 10 meters apart, and both are far from the cell's borders.
+    assertEquals(
+        GeoCell.of(new LatLng(32.0802, 34.7802), CELL_SIZE_M),
+        GeoCell.of(new LatLng(32.0803, 34.7803), CELL_SIZE_M));
+  }
+
+  @Test
+  public void of_distantLocations_differentCells() {
+    // The locations are about 2 kilometers apart.
+    assertNotEquals(
+        GeoCell.of(new LatLng(32.08, 34.78), CELL_SIZE_M),
+        GeoCell.of(new LatLng(32.10, 34.78), CELL_SIZE_M));
+  }
+
+  @Test
+  public void of_differentCellSizes_differentCells() {
+    LatLng location = new LatLng(32.08, 34.78);
+
+    assertNotEquals(GeoCell.of(location, CELL_SIZE_M), GeoCell.of(location, 2 * CELL_SIZE_M));
+  }
+
+  @Test
+  public void of_nonPositiveCellSize_throwIllegalArgumentException() {
+    assertThrows(IllegalArgumentException.class, () -> GeoCell.of(new LatLng(32.08, 34.78), 0));
+  }
+}
@@ -0,0 +1,46 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.maps.model.LatLng;
+
+@RunWith(JUnit4.class)
+public final class GeoUtilsTest {
+
+  @Test
+  public void distanceMeters_sameLocation_zero() {
+    LatLng location = new LatLng(32.08, 34.78);
+
+    assertEquals(0, GeoUtils.distanceMeters(location, location), 0);
+  }
+
+  @Test
+  public void distanceMeters_oneDegreeOfLatitude_about111Kilometers() {
+    assertEquals(111195, GeoUtils.distanceMeters(new LatLng(0, 0), new LatLng(1, 0)), 1);
+  }
+
+  @Test
+  public void distanceMeters_telAvivToJerusalem_about54Kilometers() {
+    assertEquals(
+        53887,
+        GeoUtils.distanceMeters(new LatLng(32.0853, 34.7818), new LatLng(31.7683, 35.2137)),
+        1);
+  }
+}
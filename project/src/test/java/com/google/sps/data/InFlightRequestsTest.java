@@ -0,0 +1,132 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class InFlightRequestsTest {
+
+  private static final String KEY = "placeId";
+
+  private InFlightRequests<String, String> inFlightRequests;
+  private CountDownLatch requestStarted;
+  private CountDownLatch releaseRequest;
+
+  @Before
+  public void setUp() {
+    inFlightRequests = new InFlightRequests<>();
+    requestStarted = new CountDownLatch(1);
+    releaseRequest = new CountDownLatch(1);
+  }
+
+  @Test
+  public void get_identicalConcurrentRequests_requestSentOnce() throws Exception {
+    AtomicInteger numOfRequestsSent = new AtomicInteger();
+    CompletableFuture<String> firstCaller = getOnOtherThread(() -> {
+      numOfRequestsSent.incrementAndGet();
+      return blockUntilReleased("result");
+    });
+    requestStarted.await();
+
+    CompletableFuture<String> secondCaller = inFlightRequests.get(KEY, () -> {
+      numOfRequestsSent.incrementAndGet();
+      return "other result";
+    });
+    releaseRequest.countDown();
+
+    assertEquals("result", firstCaller.get(5, TimeUnit.SECONDS));
+    assertEquals("result", secondCaller.get(5, TimeUnit.SECONDS));
+    assertEquals(1, numOfRequestsSent.get());
+    assertEquals(1, inFlightRequests.coalescedCount());
+  }
+
+  @Test
+  public void get_sharedRequestFails_allCallersGetFailure() throws Exception {
+    CompletableFuture<String> firstCaller = getOnOtherThread(() -> {
+      blockUntilReleased("result");
+      throw new IOException();
+    });
+    requestStarted.await();
+
+    CompletableFuture<String> secondCaller = inFlightRequests.get(KEY, () -> "other result");
+    releaseRequest.countDown();
+
+    ExecutionException thrown =
+        assertThrows(ExecutionException.class, () -> secondCaller.get(5, TimeUnit.SECONDS));
+    assertTrue(thrown.getCause() instanceof IOException);
+    assertTrue(firstCaller.isCompletedExceptionally());
+  }
+
+  @Test
+  public void get_callerCancelsItsView_otherCallersNotAffected() throws Exception {
+    CompletableFuture<String> firstCaller =
+        getOnOtherThread(() -> blockUntilReleased("result"));
+    requestStarted.await();
+
+    CompletableFuture<String> secondCaller = inFlightRequests.get(KEY, () -> "other result");
+    secondCaller.cancel(true);
+    releaseRequest.countDown();
+
+    assertEquals("result", firstCaller.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void get_afterRequestCompleted_newRequestSent() throws Exception {
+    inFlightRequests.get(KEY, () -> "first result");
+
+    assertEquals("second result", inFlightRequests.get(KEY, () -> "second result").get());
+    assertEquals(0, inFlightRequests.coalescedCount());
+  }
+
+  @Test
+  public void get_afterRequestFailed_newRequestSent() throws Exception {
+    CompletableFuture<String> failedRequest = inFlightRequests.get(KEY, () -> {
+      throw new IOException();
+    });
+
+    assertTrue(failedRequest.isCompletedExceptionally());
+    assertFalse(inFlightRequests.get(KEY, () -> "result").isCompletedExceptionally());
+  }
+
+  // Calls get with the given request on a new thread, and returns the future that the call
+  // returns once the request completes.
+  private CompletableFuture<String> getOnOtherThread(Callable<String> request) {
+    return CompletableFuture.supplyAsync(() -> inFlightRequests.get(KEY, request))
+        .thenCompose(result -> result);
+  }
+
+  // Signals that the request started, and blocks until the test releases it.
+  private String blockUntilReleased(String result) throws InterruptedException {
+    requestStarted.countDown();
+    assertTrue(releaseRequest.await(5, TimeUnit.SECONDS));
+    return result;
+  }
+}
@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.maps.model.LatLng;
+
+@RunWith(JUnit4.class)
+public final class InMemoryUserDataStoreTest {
+
+  private static final String USER_ID = "12345";
+
+  private final InMemoryUserDataStore dataStore = new InMemoryUserDataStore();
+
+  @Test
+  public void registerUserIfAbsent_registeredTwice_registeredOnce() {
+    assertFalse(dataStore.isRegistered(USER_ID));
+
+    assertTrue(dataStore.registerUserIfAbsent(USER_ID));
+    assertFalse(dataStore.registerUserIfAbsent(USER_ID));
+
+    assertTrue(dataStore.isRegistered(USER_ID));
+  }
+
+  @Test
+  public void getPlacesRecommendedToUser_severalFeedbacks_distinctPlacesInOrder() {
+    dataStore.updateUserFeedback(buildFeedback(USER_ID, "place1", "place1", "place2"));
+    dataStore.updateUserFeedback(buildFeedback(USER_ID, null, "place3", "place2"));
+    dataStore.updateUserFeedback(buildFeedback("54321", "place4", "place4"));
+
+    assertEquals(
+        ImmutableList.of("place1", "place2", "place3"),
+        dataStore.getPlacesRecommendedToUser(USER_ID, /* getOnlyPlacesUserChose */ false));
+    assertEquals(
+        ImmutableList.of("place1"),
+        dataStore.getPlacesRecommendedToUser(USER_ID, /* getOnlyPlacesUserChose */ true));
+  }
+
+  @Test
+  public void getPlacesRecommendedToUser_unknownUser_noPlaces() {
+    assertEquals(ImmutableList.of(), dataStore.getPlacesRecommendedToUser(USER_ID, false));
+  }
+
+  @Test
+  public void updateUserFeedback_concurrentFeedbacks_allPlacesKept() throws Exception {
+    int numOfThreads = 4;
+    int numOfFeedbacksPerThread = 200;
+    ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int thread = 0; thread < numOfThreads; thread++) {
+      int firstPlace = thread * numOfFeedbacksPerThread;
+      futures.add(executor.submit(() -> {
+        for (int i = firstPlace; i < firstPlace + numOfFeedbacksPerThread; i++) {
+          dataStore.updateUserFeedback(buildFeedback(USER_ID, "place" + i, "place" + i));
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertEquals(
+        numOfThreads * numOfFeedbacksPerThread,
+        ImmutableSet.copyOf(dataStore.getPlacesRecommendedToUser(USER_ID, true)).size());
+  }
+
+  @Test
+  public void storeUserPreferences_withAndWithoutCuisines_onlyWithCuisinesStored() {
+    UserPreferences withCuisines = buildPreferences(ImmutableList.of("sushi"));
+
+    dataStore.storeUserPreferences(USER_ID, withCuisines);
+    dataStore.storeUserPreferences(USER_ID, buildPreferences(ImmutableList.of()));
+
+    assertEquals(ImmutableList.of(withCuisines), dataStore.getStoredPreferences(USER_ID));
+  }
+
+  static UserFeedback buildFeedback(String userId, String chosenPlace, String... places) {
+    UserFeedback.Builder feedback = UserFeedback.builder()
+        .setUserId(userId)
+        .setRecommendedPlaces(ImmutableList.copyOf(places))
+        .setUserTriedAgain(chosenPlace == null);
+    if (chosenPlace != null) {
+      feedback.setChosenPlace(chosenPlace);
+    }
+    return feedback.build();
+  }
+
+  static UserPreferences buildPreferences(ImmutableList<String> cuisines) {
+    return UserPreferences.builder()
+        .setMinRating(4)
+        .setMaxPriceLevel(2)
+        .setLocation(new LatLng(32.08, 34.78))
+        .setCuisines(cuisines)
+        .setOpenNow(true)
+        .build();
+  }
+}
@@ -0,0 +1,215 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static com.google.sps.data.InMemoryUserDataStoreTest.buildFeedback;
+import static com.google.sps.data.InMemoryUserDataStoreTest.buildPreferences;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public final class LogUserDataStoreTest {
+
+  private static final String USER_ID = "12345";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void open_afterClose_dataReplayed() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    UserPreferences preferences = buildPreferences(ImmutableList.of("sushi", "burger"));
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir)) {
+      dataStore.registerUserIfAbsent(USER_ID);
+      dataStore.updateUserFeedback(buildFeedback(USER_ID, "place2", "place1", "place2"));
+      dataStore.updateUserFeedback(buildFeedback(USER_ID, null, "place3"));
+      dataStore.storeUserPreferences(USER_ID, preferences);
+    }
+
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir)) {
+      assertTrue(dataStore.isRegistered(USER_ID));
+      assertFalse(dataStore.registerUserIfAbsent(USER_ID));
+      assertEquals(
+          ImmutableList.of("place1", "place2", "place3"),
+          dataStore.getPlacesRecommendedToUser(USER_ID, /* getOnlyPlacesUserChose */ false));
+      assertEquals(
+          ImmutableList.of("place2"),
+          dataStore.getPlacesRecommendedToUser(USER_ID, /* getOnlyPlacesUserChose */ true));
+      assertEquals(
+          ImmutableList.of(preferences), dataStore.getIndex().getStoredPreferences(USER_ID));
+    }
+  }
+
+  @Test
+  public void updateUserFeedback_concurrentWrites_indexMatchesReplay() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    int numOfThreads = 8;
+    int numOfWritesPerThread = 50;
+    ImmutableList<String> places;
+    ImmutableList<UserPreferences> preferences;
+    ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir)) {
+      List<Future<?>> writers = new ArrayList<>();
+      for (int thread = 0; thread < numOfThreads; thread++) {
+        String prefix = "thread" + thread + "-";
+        writers.add(executor.submit(() -> {
+          for (int i = 0; i < numOfWritesPerThread; i++) {
+            dataStore.updateUserFeedback(buildFeedback(USER_ID, null, prefix + i));
+            dataStore.storeUserPreferences(
+                USER_ID, buildPreferences(ImmutableList.of(prefix + i)));
+          }
+        }));
+      }
+      for (Future<?> writer : writers) {
+        writer.get();
+      }
+      places = dataStore.getPlacesRecommendedToUser(USER_ID, /* getOnlyPlacesUserChose */ false);
+      preferences = dataStore.getIndex().getStoredPreferences(USER_ID);
+    } finally {
+      executor.shutdown();
+    }
+
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir)) {
+      assertEquals(
+          places,
+          dataStore.getPlacesRecommendedToUser(USER_ID, /* getOnlyPlacesUserChose */ false));
+      assertEquals(preferences, dataStore.getIndex().getStoredPreferences(USER_ID));
+    }
+  }
+
+  @Test
+  public void updateUserFeedback_moreThanASegment_rolledOverAndReplayed() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    int numOfFeedbacks = 100;
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir, /* segmentSize */ 256)) {
+      for (int i = 0; i < numOfFeedbacks; i++) {
+        dataStore.updateUserFeedback(buildFeedback(USER_ID, "place" + i, "place" + i));
+      }
+      assertTrue(Files.exists(dataStore.segmentPath(1)));
+    }
+
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir, /* segmentSize */ 256)) {
+      assertEquals(numOfFeedbacks, dataStore.getPlacesRecommendedToUser(USER_ID, true).size());
+    }
+  }
+
+  @Test
+  public void open_tornLastRecord_earlierRecordsKept() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    Path segmentPath;
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir)) {
+      dataStore.registerUserIfAbsent(USER_ID);
+      dataStore.registerUserIfAbsent("54321");
+      segmentPath = dataStore.segmentPath(0);
+    }
+    // Corrupts the contents of the second record, as if writing it was interrupted.
+    int secondRecordStart = 2 * Integer.BYTES + 1 + 2 + USER_ID.length();
+    try (RandomAccessFile segment = new RandomAccessFile(segmentPath.toFile(), "rw")) {
+      segment.seek(secondRecordStart + 2 * Integer.BYTES + 3);
+      segment.write('x');
+    }
+
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir)) {
+      assertTrue(dataStore.isRegistered(USER_ID));
+      assertFalse(dataStore.isRegistered("54321"));
+      assertTrue(dataStore.registerUserIfAbsent("67890"));
+    }
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir)) {
+      assertTrue(dataStore.isRegistered(USER_ID));
+      assertTrue(dataStore.isRegistered("67890"));
+    }
+  }
+
+  @Test
+  public void open_corruptRecordInEarlierSegment_throwIOExceptionAndSegmentKept()
+      throws IOException {
+    Path dir = folder.getRoot().toPath();
+    Path segmentPath;
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir, /* segmentSize */ 256)) {
+      for (int i = 0; i < 20; i++) {
+        dataStore.updateUserFeedback(buildFeedback(USER_ID, "place" + i, "place" + i));
+      }
+      assertTrue(Files.exists(dataStore.segmentPath(2)));
+      segmentPath = dataStore.segmentPath(1);
+    }
+    // Corrupts the contents of the first record of the middle segment.
+    try (RandomAccessFile segment = new RandomAccessFile(segmentPath.toFile(), "rw")) {
+      segment.seek(LogUserDataStore.HEADER_SIZE + 3);
+      segment.write('x');
+    }
+    byte[] corruptSegment = Files.readAllBytes(segmentPath);
+
+    assertThrows(IOException.class, () -> LogUserDataStore.open(dir, /* segmentSize */ 256));
+    assertThrows(IOException.class, () -> LogUserDataStore.open(dir, /* segmentSize */ 256));
+    assertArrayEquals(corruptSegment, Files.readAllBytes(segmentPath));
+  }
+
+  @Test
+  public void registerUserIfAbsent_recordLargerThanSegment_throwIllegalArgumentException()
+      throws IOException {
+    String userId = Strings.repeat("1", 100);
+    try (LogUserDataStore dataStore =
+        LogUserDataStore.open(folder.getRoot().toPath(), /* segmentSize */ 64)) {
+      assertThrows(IllegalArgumentException.class, () -> dataStore.registerUserIfAbsent(userId));
+      assertFalse(dataStore.isRegistered(userId));
+    }
+  }
+
+  @Test
+  public void registerUserIfAbsent_storeClosed_userNotRegistered() throws IOException {
+    LogUserDataStore dataStore = LogUserDataStore.open(folder.getRoot().toPath());
+    dataStore.close();
+
+    assertThrows(IllegalStateException.class, () -> dataStore.registerUserIfAbsent(USER_ID));
+    assertFalse(dataStore.isRegistered(USER_ID));
+  }
+
+  @Test
+  public void open_afterRolledOverSegmentsClosed_segmentsReopened() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    for (int i = 0; i < 3; i++) {
+      try (LogUserDataStore dataStore = LogUserDataStore.open(dir, /* segmentSize */ 256)) {
+        for (int j = 0; j < 20; j++) {
+          String place = "place" + (i * 20 + j);
+          dataStore.updateUserFeedback(buildFeedback(USER_ID, place, place));
+        }
+      }
+    }
+
+    try (LogUserDataStore dataStore = LogUserDataStore.open(dir, /* segmentSize */ 256)) {
+      assertEquals(60, dataStore.getPlacesRecommendedToUser(USER_ID, true).size());
+    }
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.common.collect.ImmutableSet;
+import com.google.maps.model.LatLng;
+
+@RunWith(JUnit4.class)
+public final class PlaceDetailsCacheTest {
+
+  private static final Duration DETAILS_TTL = Duration.ofHours(10);
+  private static final Duration BUSINESS_STATUS_TTL = Duration.ofMinutes(10);
+  private static final long MAX_NUM_OF_PLACES = 2;
+
+  private FakeTicker ticker;
+  private PlaceDetailsCache cache;
+
+  @Before
+  public void setUp() {
+    ticker = new FakeTicker();
+    cache = new PlaceDetailsCache(MAX_NUM_OF_PLACES, DETAILS_TTL, BUSINESS_STATUS_TTL, ticker);
+  }
+
+  @Test
+  public void getIfPresent_cachedPlace_returnsPlaceWithoutCuisines() {
+    Place place = createPlace("placeId");
+
+    cache.put(place);
+
+    assertEquals(
+        Optional.of(place.toBuilder().setCuisines(ImmutableSet.of()).build()),
+        cache.getIfPresent("placeId"));
+    assertEquals(
+        Optional.of(BusinessStatus.OPERATIONAL), cache.getBusinessStatusIfPresent("placeId"));
+    assertEquals(1, cache.detailsStats().hitCount());
+  }
+
+  @Test
+  public void getIfPresent_notCached_returnsEmptyAndCountsMiss() {
+    assertFalse(cache.getIfPresent("placeId").isPresent());
+    assertEquals(1, cache.detailsStats().missCount());
+  }
+
+  @Test
+  public void getBusinessStatusIfPresent_afterBusinessStatusTtl_onlyStatusExpires() {
+    cache.put(createPlace("placeId"));
+
+    ticker.advance(BUSINESS_STATUS_TTL);
+
+    assertFalse(cache.getBusinessStatusIfPresent("placeId").isPresent());
+    assertTrue(cache.getIfPresent("placeId").isPresent());
+  }
+
+  @Test
+  public void putBusinessStatus_afterStatusExpired_statusRefreshed() {
+    cache.put(createPlace("placeId"));
+    ticker.advance(BUSINESS_STATUS_TTL);
+
+    cache.putBusinessStatus("placeId", BusinessStatus.CLOSED_TEMPORARILY);
+
+    assertEquals(
+        Optional.of(BusinessStatus.CLOSED_TEMPORARILY),
+        cache.getBusinessStatusIfPresent("placeId"));
+  }
+
+  @Test
+  public void getIfPresent_afterDetailsTtl_placeExpired() {
+    cache.put(createPlace("placeId"));
+
+    ticker.advance(DETAILS_TTL);
+
+    assertFalse(cache.getIfPresent("placeId").isPresent());
+  }
+
+  @Test
+  public void put_moreThanMaxNumOfPlaces_evictsPlaces() {
+    cache.put(createPlace("placeId1"));
+    cache.put(createPlace("placeId2"));
+    cache.put(createPlace("placeId3"));
+
+    assertEquals(1, cache.detailsStats().evictionCount());
+  }
+
+  @Test
+  public void disabled_cachedPlace_neverReturned() {
+    PlaceDetailsCache disabledCache = PlaceDetailsCache.disabled();
+
+    disabledCache.put(createPlace("placeId"));
+
+    assertFalse(disabledCache.getIfPresent("placeId").isPresent());
+  }
+
+  private static Place createPlace(String placeId) {
+    return Place.builder()
+        .setName("name")
+        .setWebsiteUrl("website@google.com")
+        .setPhone("+97250-0000-000")
+        .setRating(4)
+        .setPriceLevel(3)
+        .setLocation(new LatLng(35.35, 30.30))
+        .setGoogleUrl("googleurl.com")
+        .setPlaceId(placeId)
+        .setBusinessStatus(BusinessStatus.OPERATIONAL)
+        .setCuisines(ImmutableSet.of("sushi", "hamburger"))
+        .build();
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toCollection;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.maps.model.LatLng;
+
+/**
+ * Places and reference implementations that are shared by the tests and the benchmarks of places.
+ */
+final class PlaceFixtures {
+
+  /**
+   * Creates places with ratings in steps of a half, some of them closed or without a website,
+   * whose names repeat so that many of them are branches of the same place.
+   */
+  static ImmutableList<Place> createPlaces(int numOfPlaces, Random random) {
+    ImmutableList.Builder<Place> places = ImmutableList.builder();
+    for (int i = 0; i < numOfPlaces; i++) {
+      boolean hasWebsite = random.nextInt(10) > 0;
+      places.add(Place.builder()
+          .setName("name" + random.nextInt(Math.max(1, numOfPlaces / 3)))
+          .setWebsiteUrl(hasWebsite ? "place.com" : "")
+          .setPhone("+97250-0000-000")
+          .setRating(1 + random.nextInt(9) / 2f)
+          .setPriceLevel(2)
+          .setLocation(new LatLng(32.08, 34.78))
+          .setGoogleUrl(hasWebsite ? "google.com" : "")
+          .setPlaceId("place" + i)
+          .setBusinessStatus(random.nextInt(10) > 0
+              ? BusinessStatus.OPERATIONAL : BusinessStatus.CLOSED_TEMPORARILY)
+          .setCuisines(ImmutableSet.of("sushi"))
+          .build());
+    }
+    return places.build();
+  }
+
+  /**
+   * The implementation that Places.filter replaced, which sorted all the places, ran a pass per
+   * predicate and then copied the results into a TreeSet to deduplicate branches. Places.filter
+   * must keep its output.
+   */
+  static ImmutableList<Place> sortThenFilter(ImmutableList<Place> places, int approxMinRating,
+      Boolean filterIfNoWebsite, Boolean filterBranchesOfSamePlace) {
+    ImmutableList<Place> result =
+        places.stream()
+            .sorted(Comparator.comparing(Place::rating).reversed())
+            .filter(place -> place.businessStatus() == BusinessStatus.OPERATIONAL)
+            .filter(place -> Math.rint(place.rating()) >= approxMinRating)
+            .filter(place -> !(filterIfNoWebsite
+                && Strings.isNullOrEmpty(place.websiteUrl())
+                && Strings.isNullOrEmpty(place.googleUrl())))
+            .collect(ImmutableList.toImmutableList());
+    if (filterBranchesOfSamePlace) {
+      result = result.stream().collect(
+          collectingAndThen(
+              toCollection(() -> new TreeSet<>(comparing(Place::name))),
+              ImmutableList::copyOf));
+    }
+    return result;
+  }
+
+  private PlaceFixtures() { }
+}
@@ -19,6 +19,7 @@ import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.spy;
@@ -37,7 +38,17 @@ import com.google.maps.model.PriceLevel;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -175,7 +186,8 @@ public final class PlacesFetcherTest {
     doReturn(new PlacesSearchResult[0])
       .when(spiedFetcher)
       .getPlacesSearchResults(any(TextSearchRequest.class));
-    ImmutableList<Place> output = spiedFetcher.fetch(PREFERENCES_BUILDER.build());
+    ImmutableList<Place> output =
+        spiedFetcher.fetch(PREFERENCES_BUILDER.setCuisines(CUISINES_LIST).build());
     verify(spiedFetcher, times(MAX_NUM_OF_RADIUS_EXTENSIONS * CUISINES_LIST.size()))
       .getPlacesSearchResults(any(TextSearchRequest.class));
     assertEquals(ImmutableList.of(), output);
@@ -284,6 +296,362 @@ public final class PlacesFetcherTest {
     assertTrue(thrown.getMessage().contains("place details"));
   }
 
+  @Test
+  public void fetch_fewCuisines_searchesAreSentConcurrently() throws Exception {
+    // Each search waits until all the searches of the round were sent, which can only happen if
+    // they are sent concurrently.
+    PlacesFetcher spiedFetcher = spy(placesFetcher);
+    UserPreferences userPrefs = PREFERENCES_BUILDER.setCuisines(CUISINES_LIST).build();
+    CountDownLatch allSearchesSent = new CountDownLatch(CUISINES_LIST.size());
+    doAnswer(invocation -> {
+      allSearchesSent.countDown();
+      assertTrue(allSearchesSent.await(5, TimeUnit.SECONDS));
+      return new PlacesSearchResult[] {SEARCH_RESULT_1 };
+    }).when(spiedFetcher).getPlacesSearchResults(any(TextSearchRequest.class));
+    doReturn(PLACE_DETAILS_1)
+      .when(spiedFetcher)
+      .getPlaceDetails(argThat(matchesDetailsRequest(PLACEID_1)));
+
+    assertEquals(
+      ImmutableList.of(createValidPlace(NAME_1, PLACEID_1, CUISINES_SET)),
+      spiedFetcher.fetch(userPrefs));
+  }
+
+  @Test
+  public void fetch_otherQuerySharingSearchFails_sharedSearchStillSucceeds() throws Exception {
+    // The first query sends the sushi search, and fails on its hamburger search only after the
+    // second query joined the sushi search. The first query gives up on its sushi search, which
+    // must still complete for the second query.
+    PlacesFetcher spiedFetcher = spy(new PlacesFetcher(
+        new FakeSearchRequestGenerator(GeoContext.getGeoApiContext()),
+        new FakePlaceDetailsRequestGenerator(GeoContext.getGeoApiContext())));
+    CountDownLatch sushiSearchSent = new CountDownLatch(1);
+    CountDownLatch firstQueryFailed = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      sushiSearchSent.countDown();
+      assertTrue(firstQueryFailed.await(5, TimeUnit.SECONDS));
+      return new PlacesSearchResult[] {SEARCH_RESULT_1 };
+    }).when(spiedFetcher).getPlacesSearchResults(argThat(matchesSearchRequest("sushi")));
+    doAnswer(invocation -> {
+      while (spiedFetcher.coalescedSearches() == 0) {
+        Thread.sleep(10);
+      }
+      throw new IOException();
+    }).when(spiedFetcher).getPlacesSearchResults(argThat(matchesSearchRequest("hamburger")));
+    doReturn(PLACE_DETAILS_1)
+      .when(spiedFetcher)
+      .getPlaceDetails(argThat(matchesDetailsRequest(PLACEID_1)));
+    UserPreferences firstPrefs =
+        PREFERENCES_BUILDER.setCuisines(ImmutableList.of("hamburger", "sushi")).build();
+    UserPreferences secondPrefs =
+        PREFERENCES_BUILDER.setCuisines(ImmutableList.of("sushi")).build();
+    ExecutorService queriesExecutor = Executors.newFixedThreadPool(2);
+
+    try {
+      Future<ImmutableList<Place>> firstQuery =
+          queriesExecutor.submit(() -> spiedFetcher.fetch(firstPrefs));
+      assertTrue(sushiSearchSent.await(5, TimeUnit.SECONDS));
+      Future<ImmutableList<Place>> secondQuery =
+          queriesExecutor.submit(() -> spiedFetcher.fetch(secondPrefs));
+      ExecutionException thrown =
+          assertThrows(ExecutionException.class, () -> firstQuery.get(5, TimeUnit.SECONDS));
+      firstQueryFailed.countDown();
+
+      assertTrue(thrown.getCause() instanceof FetcherException);
+      assertEquals(
+        ImmutableList.of(createValidPlace(NAME_1, PLACEID_1, ImmutableSet.of("sushi"))),
+        secondQuery.get(5, TimeUnit.SECONDS));
+    } finally {
+      queriesExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void fetch_manyPlaces_detailsRequestsSentUpToMaxConcurrently() throws Exception {
+    // The first requests wait until as many requests as allowed are in flight, which can only
+    // happen if they are sent concurrently.
+    int maxConcurrentRequests = 4;
+    AtomicInteger maxNumOfRequestsInFlight = new AtomicInteger();
+    PlacesFetcher spiedFetcher = createFetcherWithTrackedDetails(
+        maxConcurrentRequests,
+        new CountDownLatch(maxConcurrentRequests),
+        maxNumOfRequestsInFlight);
+    UserPreferences userPrefs = PREFERENCES_BUILDER.setCuisines(ImmutableList.of("sushi")).build();
+
+    assertEquals(8, spiedFetcher.fetch(userPrefs).size());
+    assertEquals(maxConcurrentRequests, maxNumOfRequestsInFlight.get());
+  }
+
+  @Test
+  public void fetch_concurrentQueries_eachQueryBoundedOnItsOwn() throws Exception {
+    // The requests wait until both queries have all their allowed requests in flight, which can
+    // only happen if one query's requests don't count against the other query's bound.
+    int maxConcurrentRequests = 2;
+    AtomicInteger maxNumOfRequestsInFlight = new AtomicInteger();
+    PlacesFetcher spiedFetcher = createFetcherWithTrackedDetails(
+        maxConcurrentRequests,
+        new CountDownLatch(2 * maxConcurrentRequests),
+        maxNumOfRequestsInFlight);
+    UserPreferences sushiPrefs =
+        PREFERENCES_BUILDER.setCuisines(ImmutableList.of("sushi")).build();
+    UserPreferences hamburgerPrefs =
+        PREFERENCES_BUILDER.setCuisines(ImmutableList.of("hamburger")).build();
+    ExecutorService queriesExecutor = Executors.newFixedThreadPool(2);
+
+    try {
+      Future<ImmutableList<Place>> sushiQuery =
+          queriesExecutor.submit(() -> spiedFetcher.fetch(sushiPrefs));
+      Future<ImmutableList<Place>> hamburgerQuery =
+          queriesExecutor.submit(() -> spiedFetcher.fetch(hamburgerPrefs));
+
+      assertEquals(8, sushiQuery.get(5, TimeUnit.SECONDS).size());
+      assertEquals(8, hamburgerQuery.get(5, TimeUnit.SECONDS).size());
+      assertEquals(2 * maxConcurrentRequests, maxNumOfRequestsInFlight.get());
+    } finally {
+      queriesExecutor.shutdownNow();
+    }
+  }
+
+  // Returns a fetcher whose searches find 8 places for every cuisine. Every details request
+  // counts down the given latch and waits until it reaches zero, and the maximal number of
+  // details requests that were in flight at the same time is kept in the given counter.
+  private static PlacesFetcher createFetcherWithTrackedDetails(
+        int maxConcurrentRequests,
+        CountDownLatch requestsInFlight,
+        AtomicInteger maxNumOfRequestsInFlight) throws Exception {
+    PlacesFetcher spiedFetcher = spy(new PlacesFetcher(
+        new FakeSearchRequestGenerator(GeoContext.getGeoApiContext()),
+        new FakePlaceDetailsRequestGenerator(GeoContext.getGeoApiContext()),
+        maxConcurrentRequests,
+        PlaceDetailsCache.disabled(),
+        SearchResultCache.disabled()));
+    doAnswer(invocation -> {
+      FakeSearchRequestGenerator.FakeSearchRequest request = invocation.getArgument(0);
+      PlacesSearchResult[] searchResults = new PlacesSearchResult[8];
+      for (int i = 0; i < searchResults.length; i++) {
+        searchResults[i] = createTestPlacesSearchResult(request.searchWords + i);
+      }
+      return searchResults;
+    }).when(spiedFetcher).getPlacesSearchResults(any(TextSearchRequest.class));
+    AtomicInteger numOfRequestsInFlight = new AtomicInteger();
+    doAnswer(invocation -> {
+      FakePlaceDetailsRequestGenerator.FakePlaceDetailsRequest request =
+          invocation.getArgument(0);
+      maxNumOfRequestsInFlight.accumulateAndGet(
+          numOfRequestsInFlight.incrementAndGet(), Math::max);
+      try {
+        requestsInFlight.countDown();
+        assertTrue(requestsInFlight.await(5, TimeUnit.SECONDS));
+        return createTestPlaceDetails(
+            NAME_1, PLACE_DETAILS_WEBSITE, PHONE, RATING, PRICE_LEVEL,
+            LOCATION, PLACE_DETAILS_GOOGLE_URL, request.placeId, STRING_BUSINESS_STATUS);
+      } finally {
+        numOfRequestsInFlight.decrementAndGet();
+      }
+    }).when(spiedFetcher).getPlaceDetails(any(PlaceDetailsRequest.class));
+    return spiedFetcher;
+  }
+
+  @Test
+  public void fetch_cachedPlaceDetails_detailsRequestedOnce() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    PlacesFetcher spiedFetcher = spy(createFetcherWithCache(ticker));
+    UserPreferences userPrefs = PREFERENCES_BUILDER.setCuisines(CUISINES_LIST).build();
+    doReturn(new PlacesSearchResult[] {SEARCH_RESULT_1 })
+      .when(spiedFetcher)
+      .getPlacesSearchResults(any(TextSearchRequest.class));
+    doReturn(PLACE_DETAILS_1)
+      .when(spiedFetcher)
+      .getPlaceDetails(argThat(matchesDetailsRequest(PLACEID_1)));
+
+    ImmutableList<Place> firstOutput = spiedFetcher.fetch(userPrefs);
+    ImmutableList<Place> secondOutput = spiedFetcher.fetch(userPrefs);
+
+    verify(spiedFetcher, times(1)).getPlaceDetails(any(PlaceDetailsRequest.class));
+    assertEquals(ImmutableList.of(createValidPlace(NAME_1, PLACEID_1, CUISINES_SET)), firstOutput);
+    assertEquals(firstOutput, secondOutput);
+  }
+
+  @Test
+  public void fetch_cachedBusinessStatusExpired_businessStatusRefreshed() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    PlacesFetcher spiedFetcher = spy(createFetcherWithCache(ticker));
+    UserPreferences userPrefs = PREFERENCES_BUILDER.setCuisines(CUISINES_LIST).build();
+    PlaceDetails closedPlaceDetails = new PlaceDetails();
+    closedPlaceDetails.businessStatus = "CLOSED_TEMPORARILY";
+    doReturn(new PlacesSearchResult[] {SEARCH_RESULT_1 })
+      .when(spiedFetcher)
+      .getPlacesSearchResults(any(TextSearchRequest.class));
+    doReturn(PLACE_DETAILS_1)
+      .doReturn(closedPlaceDetails)
+      .when(spiedFetcher)
+      .getPlaceDetails(argThat(matchesDetailsRequest(PLACEID_1)));
+
+    spiedFetcher.fetch(userPrefs);
+    ticker.advance(Duration.ofHours(1));
+    ImmutableList<Place> output = spiedFetcher.fetch(userPrefs);
+
+    verify(spiedFetcher, times(2)).getPlaceDetails(any(PlaceDetailsRequest.class));
+    assertEquals(
+      ImmutableList.of(
+          createValidPlace(NAME_1, PLACEID_1, CUISINES_SET).toBuilder()
+              .setBusinessStatus(BusinessStatus.CLOSED_TEMPORARILY)
+              .build()),
+      output);
+  }
+
+  // Returns a PlacesFetcher whose details cache keeps the details for a day, and the business
+  // statuses for half an hour.
+  private static PlacesFetcher createFetcherWithCache(FakeTicker ticker) {
+    return new PlacesFetcher(
+        new FakeSearchRequestGenerator(GeoContext.getGeoApiContext()),
+        new FakePlaceDetailsRequestGenerator(GeoContext.getGeoApiContext()),
+        1 /* maxConcurrentRequests */,
+        new PlaceDetailsCache(
+            100 /* maxNumOfPlaces */, Duration.ofDays(1), Duration.ofMinutes(30), ticker),
+        SearchResultCache.disabled());
+  }
+
+  @Test
+  public void fetch_nearbyLocationSearchCached_searchesSentOnce() throws Exception {
+    PlacesFetcher spiedFetcher = spy(new PlacesFetcher(
+        new FakeSearchRequestGenerator(GeoContext.getGeoApiContext()),
+        new FakePlaceDetailsRequestGenerator(GeoContext.getGeoApiContext()),
+        1 /* maxConcurrentRequests */,
+        PlaceDetailsCache.disabled(),
+        SearchResultCache.create(100 /* maxNumOfSearches */, Duration.ofMinutes(10), 500)));
+    // About 50 meters away from LOCATION, so in the same 500 meters cell.
+    LatLng nearbyLocation = new LatLng(LOCATION.lat + 0.0004, LOCATION.lng);
+    doReturn(new PlacesSearchResult[] {SEARCH_RESULT_1 })
+      .when(spiedFetcher)
+      .getPlacesSearchResults(any(TextSearchRequest.class));
+    doReturn(PLACE_DETAILS_1)
+      .when(spiedFetcher)
+      .getPlaceDetails(argThat(matchesDetailsRequest(PLACEID_1)));
+
+    ImmutableList<Place> firstOutput =
+        spiedFetcher.fetch(PREFERENCES_BUILDER.setCuisines(CUISINES_LIST).build());
+    ImmutableList<Place> secondOutput =
+        spiedFetcher.fetch(PREFERENCES_BUILDER.setLocation(nearbyLocation).build());
+    PREFERENCES_BUILDER.setLocation(LOCATION);
+
+    verify(spiedFetcher, times(MAX_NUM_OF_RADIUS_EXTENSIONS * CUISINES_LIST.size()))
+      .getPlacesSearchResults(any(TextSearchRequest.class));
+    assertEquals(firstOutput, secondOutput);
+  }
+
+  @Test
+  public void fetch_radiusExtended_onlyCuisinesShortOfResultsSearchedAgain() throws Exception {
+    PlacesFetcher spiedFetcher = spy(new PlacesFetcher(
+        new FakeSearchRequestGenerator(GeoContext.getGeoApiContext()),
+        new FakePlaceDetailsRequestGenerator(GeoContext.getGeoApiContext())));
+    UserPreferences userPrefs = PREFERENCES_BUILDER.setCuisines(CUISINES_LIST).build();
+    // "sushi" gets its share of the minimal number of results (half of them) on the first search,
+    // while "hamburger" gets no results at all.
+    int numOfSushiPlaces = 5;
+    PlacesSearchResult[] sushiResults = new PlacesSearchResult[numOfSushiPlaces];
+    for (int i = 0; i < numOfSushiPlaces; i++) {
+      sushiResults[i] = createTestPlacesSearchResult("placeId" + i);
+    }
+    doReturn(sushiResults)
+      .when(spiedFetcher)
+      .getPlacesSearchResults(argThat(matchesSearchRequest("sushi")));
+    doReturn(new PlacesSearchResult[0])
+      .when(spiedFetcher)
+      .getPlacesSearchResults(argThat(matchesSearchRequest("hamburger")));
+    doAnswer(invocation -> createTestPlaceDetails(
+          NAME_1, PLACE_DETAILS_WEBSITE, PHONE, RATING, PRICE_LEVEL, LOCATION,
+          PLACE_DETAILS_GOOGLE_URL,
+          ((FakePlaceDetailsRequestGenerator.FakePlaceDetailsRequest) invocation.getArgument(0))
+              .placeId,
+          STRING_BUSINESS_STATUS))
+      .when(spiedFetcher).getPlaceDetails(any(PlaceDetailsRequest.class));
+
+    assertEquals(numOfSushiPlaces, spiedFetcher.fetch(userPrefs).size());
+    verify(spiedFetcher, times(1))
+      .getPlacesSearchResults(argThat(matchesSearchRequest("sushi")));
+    verify(spiedFetcher, times(MAX_NUM_OF_RADIUS_EXTENSIONS))
+      .getPlacesSearchResults(argThat(matchesSearchRequest("hamburger")));
+    assertEquals(MAX_NUM_OF_RADIUS_EXTENSIONS - 1, spiedFetcher.stats().searchesSaved());
+    assertEquals(1, spiedFetcher.stats().queries());
+  }
+
+  @Test
+  public void fetch_enoughPlacesPassFilter_detailsOfLowerRatedPlacesNotRequested()
+      throws Exception {
+    PlacesFetcher spiedFetcher = spy(new PlacesFetcher(
+        new FakeSearchRequestGenerator(GeoContext.getGeoApiContext()),
+        new FakePlaceDetailsRequestGenerator(GeoContext.getGeoApiContext())));
+    UserPreferences userPrefs = PREFERENCES_BUILDER.setCuisines(ImmutableList.of("sushi")).build();
+    // The rating of each place grows with its index, so "placeId11" is the highest rated.
+    int numOfPlaces = 12;
+    PlacesSearchResult[] searchResults = new PlacesSearchResult[numOfPlaces];
+    for (int i = 0; i < numOfPlaces; i++) {
+      searchResults[i] = createTestPlacesSearchResult("placeId" + i);
+      searchResults[i].rating = RATING + i / 12f;
+    }
+    doReturn(searchResults)
+      .when(spiedFetcher)
+      .getPlacesSearchResults(any(TextSearchRequest.class));
+    doAnswer(invocation -> createTestPlaceDetails(
+          NAME_1, PLACE_DETAILS_WEBSITE, PHONE, RATING, PRICE_LEVEL, LOCATION,
+          PLACE_DETAILS_GOOGLE_URL,
+          ((FakePlaceDetailsRequestGenerator.FakePlaceDetailsRequest) invocation.getArgument(0))
+              .placeId,
+          STRING_BUSINESS_STATUS))
+      .when(spiedFetcher).getPlaceDetails(any(PlaceDetailsRequest.class));
+
+    List<Integer> batchSizes = new ArrayList<>();
+
+    // The filter drops the highest rated place, so one more place has to be fetched after the
+    // first three.
+    ImmutableList<Place> output = spiedFetcher.fetch(
+        userPrefs,
+        places -> places.stream()
+            .filter(place -> !place.placeId().equals("placeId11"))
+            .collect(ImmutableList.toImmutableList()),
+        2 /* maxResults */,
+        1 /* safetyMargin */,
+        batch -> batchSizes.add(batch.size()));
+
+    assertEquals(
+        ImmutableList.of("placeId10", "placeId9", "placeId8"),
+        output.stream().map(Place::placeId).collect(ImmutableList.toImmutableList()));
+    verify(spiedFetcher, times(4)).getPlaceDetails(any(PlaceDetailsRequest.class));
+    assertEquals(numOfPlaces - 4, spiedFetcher.stats().detailsSkipped());
+    assertEquals(ImmutableList.of(3, 1), batchSizes);
+  }
+
+  @Test
+  public void fetch_searchResultsShowPlacesFilteredOut_detailsNotRequested() throws Exception {
+    PlacesFetcher spiedFetcher = spy(new PlacesFetcher(
+        new FakeSearchRequestGenerator(GeoContext.getGeoApiContext()),
+        new FakePlaceDetailsRequestGenerator(GeoContext.getGeoApiContext())));
+    PlacesSearchResult closedPlace = createTestPlacesSearchResult("closedPlace");
+    closedPlace.businessStatus = "CLOSED_TEMPORARILY";
+    PlacesSearchResult lowRatingPlace = createTestPlacesSearchResult("lowRatingPlace");
+    lowRatingPlace.rating = RATING - 1;
+    // About 30 kilometers north of LOCATION.
+    PlacesSearchResult farPlace = createTestPlacesSearchResult("farPlace");
+    farPlace.geometry = new Geometry();
+    farPlace.geometry.location = new LatLng(LOCATION.lat + 0.27, LOCATION.lng);
+    doReturn(new PlacesSearchResult[] {SEARCH_RESULT_1, closedPlace, lowRatingPlace, farPlace})
+      .when(spiedFetcher)
+      .getPlacesSearchResults(any(TextSearchRequest.class));
+    doReturn(PLACE_DETAILS_1)
+      .when(spiedFetcher)
+      .getPlaceDetails(argThat(matchesDetailsRequest(PLACEID_1)));
+
+    ImmutableList<Place> output =
+        spiedFetcher.fetch(PREFERENCES_BUILDER.setCuisines(ImmutableList.of("sushi")).build());
+
+    assertEquals(
+        ImmutableList.of(PLACEID_1),
+        output.stream().map(Place::placeId).collect(ImmutableList.toImmutableList()));
+    verify(spiedFetcher, times(1)).getPlaceDetails(any(PlaceDetailsRequest.class));
+    assertEquals(3, spiedFetcher.stats().candidatesPreFiltered());
+  }
+
   @Test
   public void getSearchWords_getsValidCuisines_returnsQuery() throws Exception {
     assertEquals(
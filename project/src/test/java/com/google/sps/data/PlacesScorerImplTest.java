@@ -14,19 +14,25 @@
 
 package com.google.sps.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
+import java.util.Optional;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.maps.DistanceMatrixApiRequest;
 import com.google.maps.model.DistanceMatrix;
 import com.google.maps.model.DistanceMatrixElement;
@@ -82,7 +88,8 @@ public class PlacesScorerImplTest {
 
     /** A PlacesScorer instance to be tested. */
     private static PlacesScorerImpl placesScorer =
-        new PlacesScorerImpl(GeoContext.getGeoApiContext());
+        new PlacesScorerImpl(
+            GeoContext.getGeoApiContext(), DurationCache.disabled(), DurationEstimator.create());
 
     @Test
     public void getScores_validPlaceList_returnsMapOfCorrectScores() throws Exception {
@@ -109,6 +116,19 @@ public class PlacesScorerImplTest {
         assertEquals(expectedScorePlaceRating5, result.get(placeWithRating5), DELTA);
     }
 
+    @Test
+    public void getScoresArray_prefetchedDurations_scoresAlignedWithPlaces() {
+        Place placeWithRating3 = PLACE_BUILDER.setPlaceId("place3").setRating(3).build();
+        Place placeWithRating5 = PLACE_BUILDER.setPlaceId("place5").setRating(5).build();
+
+        double[] result = placesScorer.getScoresArray(
+            ImmutableList.of(placeWithRating5, placeWithRating3),
+            USER_LOCATION,
+            ImmutableMap.of("place3", 30 * 60L, "place5", 30 * 60L));
+
+        assertArrayEquals(new double[] {0.775, 0.495}, result, DELTA);
+    }
+
     @Test
     public void getScores_emptyPlaceList_returnsEmptyMap() throws Exception {
         PlacesScorerImpl spiedScorer = spy(placesScorer);
@@ -168,6 +188,198 @@ public class PlacesScorerImplTest {
         assertEquals(expectedScore, result.get(placeWithMaxRating2), DELTA);
     }
 
+    @Test
+    public void getScores_prefetchedDurations_distanceMatrixNotRequested() throws Exception {
+        Place placeWithRating5 = PLACE_BUILDER.setRating(5).build();
+        PlacesScorerImpl spiedScorer = spy(placesScorer);
+
+        ImmutableMap<Place, Double> result =
+            spiedScorer.getScores(
+                ImmutableList.of(placeWithRating5),
+                USER_LOCATION,
+                ImmutableMap.of(placeWithRating5.placeId(), 1800L));
+
+        verify(spiedScorer, never()).getDistanceResults(any(DistanceMatrixApiRequest.class));
+        assertEquals(0.775, result.get(placeWithRating5), DELTA);
+    }
+
+    @Test
+    public void prefetchDurations_candidatesWithLocations_returnsDurationsByPlaceId()
+            throws Exception {
+        DISTANCE_MATRIX_ROW[0].elements[0].status = DistanceMatrixElementStatus.OK;
+        DISTANCE_MATRIX_ROW[1].elements[0].status = DistanceMatrixElementStatus.OK;
+        PlacesScorerImpl spiedScorer = spy(placesScorer);
+        doReturn(new DistanceMatrix(PLACES_ADDRESSES, USERS_ADDRESS, DISTANCE_MATRIX_ROW))
+            .when(spiedScorer)
+            .getDistanceResults(any(DistanceMatrixApiRequest.class));
+
+        ImmutableMap<String, Long> result =
+            spiedScorer.prefetchDurations(
+                ImmutableList.of(
+                    PlaceCandidate.create(
+                        "place1",
+                        4,
+                        BusinessStatus.OPERATIONAL,
+                        Optional.of(new LatLng(32.08, 34.78))),
+                    PlaceCandidate.create(
+                        "place2",
+                        4,
+                        BusinessStatus.OPERATIONAL,
+                        Optional.of(new LatLng(32.09, 34.78))),
+                    PlaceCandidate.create(
+                        "noLocation", 4, BusinessStatus.OPERATIONAL, Optional.empty())),
+                USER_LOCATION)
+            .get();
+
+        assertEquals(ImmutableMap.of("place1", 1800L, "place2", 1800L), result);
+    }
+
+    @Test
+    public void prefetchDurations_durationCalculationFails_returnsEmptyMap() throws Exception {
+        PlacesScorerImpl spiedScorer = spy(placesScorer);
+        doThrow(new IOException())
+            .when(spiedScorer)
+            .getDistanceResults(any(DistanceMatrixApiRequest.class));
+
+        ImmutableMap<String, Long> result =
+            spiedScorer.prefetchDurations(
+                ImmutableList.of(PlaceCandidate.create(
+                    "place1",
+                    4,
+                    BusinessStatus.OPERATIONAL,
+                    Optional.of(new LatLng(32.08, 34.78)))),
+                USER_LOCATION)
+            .get();
+
+        assertEquals(ImmutableMap.of(), result);
+    }
+
+    @Test
+    public void getScores_moreOriginsThanRequestLimit_failedChunkScoredByRating()
+            throws Exception {
+        // Requests are sent on the calling thread, so the first request is the first chunk.
+        PlacesScorerImpl spiedScorer = spy(new PlacesScorerImpl(
+            GeoContext.getGeoApiContext(),
+            MoreExecutors.newDirectExecutorService(),
+            DurationCache.disabled(),
+            DurationEstimator.exact()));
+        int numOfPlaces = 30;
+        int maxOriginsPerRequest = 25;
+        ImmutableList.Builder<Place> places = ImmutableList.builder();
+        for (int i = 0; i < numOfPlaces; i++) {
+            places.add(
+                PLACE_BUILDER.setName("place" + i).setPlaceId("place" + i).setRating(5).build());
+        }
+        DistanceMatrixRow[] rows = createUniformDistanceMatrixRows(maxOriginsPerRequest, 1800L);
+        rows[0].elements[0].status = DistanceMatrixElementStatus.OK;
+        doThrow(new IOException())
+            .doReturn(new DistanceMatrix(new String[0], USERS_ADDRESS, rows))
+            .when(spiedScorer)
+            .getDistanceResults(any(DistanceMatrixApiRequest.class));
+
+        ImmutableList<Double> scores = spiedScorer.getScores(places.build(), USER_LOCATION)
+            .values().asList();
+
+        // The places of the failed chunk are scored by their rating only.
+        for (int i = 0; i < numOfPlaces; i++) {
+            assertEquals(i < maxOriginsPerRequest ? 1.0 : 0.775, scores.get(i), DELTA);
+        }
+        assertEquals(2, spiedScorer.stats().distanceRequests());
+        assertEquals(1, spiedScorer.stats().failedDistanceRequests());
+    }
+
+    @Test
+    public void getScores_durationsCached_onlyMissesRequested() throws Exception {
+        DurationCache durationCache = DurationCache.create(
+            100 /* maxNumOfDurations */,
+            java.time.Duration.ofDays(1),
+            500 /* cellSizeMeters */,
+            java.time.Duration.ofHours(1));
+        PlacesScorerImpl spiedScorer = spy(new PlacesScorerImpl(
+            GeoContext.getGeoApiContext(),
+            MoreExecutors.newDirectExecutorService(),
+            durationCache,
+            DurationEstimator.exact()));
+        Place place1 = PLACE_BUILDER.setName("place1").setPlaceId("place1").setRating(5).build();
+        Place place2 = PLACE_BUILDER.setName("place2").setPlaceId("place2").setRating(5).build();
+        DISTANCE_MATRIX_ROW[0].elements[0].status = DistanceMatrixElementStatus.OK;
+        DISTANCE_MATRIX_ROW[1].elements[0].status = DistanceMatrixElementStatus.OK;
+        doReturn(new DistanceMatrix(PLACES_ADDRESSES, USERS_ADDRESS, DISTANCE_MATRIX_ROW))
+            .when(spiedScorer)
+            .getDistanceResults(any(DistanceMatrixApiRequest.class));
+
+        spiedScorer.getScores(ImmutableList.of(place1), USER_LOCATION);
+        ImmutableMap<Place, Double> result =
+            spiedScorer.getScores(ImmutableList.of(place1, place2), USER_LOCATION);
 
+        // The second scoring requests the duration of place2 only.
+        assertEquals(2, spiedScorer.stats().distanceRequests());
+        assertEquals(1, durationCache.stats().hitCount());
+        assertEquals(0.775, result.get(place1), DELTA);
+        assertEquals(0.775, result.get(place2), DELTA);
+    }
 
+    @Test
+    public void getScores_invalidDurationStatus_durationNotCached() throws Exception {
+        DurationCache durationCache = DurationCache.create(
+            100 /* maxNumOfDurations */,
+            java.time.Duration.ofDays(1),
+            500 /* cellSizeMeters */,
+            java.time.Duration.ofHours(1));
+        PlacesScorerImpl spiedScorer = spy(new PlacesScorerImpl(
+            GeoContext.getGeoApiContext(),
+            MoreExecutors.newDirectExecutorService(),
+            durationCache,
+            DurationEstimator.exact()));
+        Place place1 = PLACE_BUILDER.setName("place1").setPlaceId("place1").setRating(5).build();
+        DISTANCE_MATRIX_ROW[0].elements[0].status = DistanceMatrixElementStatus.NOT_FOUND;
+        doReturn(new DistanceMatrix(PLACES_ADDRESSES, USERS_ADDRESS, DISTANCE_MATRIX_ROW))
+            .when(spiedScorer)
+            .getDistanceResults(any(DistanceMatrixApiRequest.class));
+
+        ImmutableMap<Place, Double> firstResult =
+            spiedScorer.getScores(ImmutableList.of(place1), USER_LOCATION);
+        DISTANCE_MATRIX_ROW[0].elements[0].status = DistanceMatrixElementStatus.OK;
+        ImmutableMap<Place, Double> secondResult =
+            spiedScorer.getScores(ImmutableList.of(place1), USER_LOCATION);
+
+        // The second scoring requests the duration again, since the missing one wasn't cached.
+        assertEquals(2, spiedScorer.stats().distanceRequests());
+        assertEquals(0, durationCache.stats().hitCount());
+        assertEquals(0.7, firstResult.get(place1), DELTA);
+        assertEquals(0.775, secondResult.get(place1), DELTA);
+    }
+
+    @Test
+    public void getTopScores_lowRatedPlacesCantReachTop_durationsNotRequested()
+            throws Exception {
+        PlacesScorerImpl spiedScorer = spy(new PlacesScorerImpl(
+            GeoContext.getGeoApiContext(),
+            MoreExecutors.newDirectExecutorService(),
+            DurationCache.disabled(),
+            DurationEstimator.exact()));
+        // The three highest rated places are right by the user, so they get scores above 0.9,
+        // which places with a rating of 2 can't reach even with no driving at all.
+        ImmutableList.Builder<Place> places = ImmutableList.builder();
+        for (int i = 0; i < 3; i++) {
+            places.add(
+                PLACE_BUILDER.setName("high" + i).setPlaceId("high" + i).setRating(5).build());
+        }
+        for (int i = 0; i < 5; i++) {
+            places.add(
+                PLACE_BUILDER.setName("low" + i).setPlaceId("low" + i).setRating(2).build());
+        }
+        doAnswer(invocation -> invocation.<ImmutableMap<String, LatLng>>getArgument(0)
+                .keySet().stream()
+                .collect(ImmutableMap.toImmutableMap(placeId -> placeId, placeId -> 60L)))
+            .when(spiedScorer)
+            .requestDurations(any(), any(LatLng.class));
+
+        ImmutableMap<Place, Double> result =
+            spiedScorer.getTopScores(places.build(), USER_LOCATION, ImmutableMap.of(), 3);
+
+        assertEquals(3, result.size());
+        assertEquals(3, spiedScorer.stats().distanceMatrixElements());
+        result.values().forEach(score -> assertEquals(0.9925, score, DELTA));
+    }
 }
@@ -19,6 +19,9 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -40,6 +43,40 @@ public final class PlacesTest {
     assertTrue(result.contains(place2));
   }
 
+  @Test
+  public void randomSample_sameSeed_sameSample() {
+    ImmutableList<Place> places = PlaceFixtures.createPlaces(100, new Random(7));
+
+    ImmutableList<Place> result = Places.randomSample(places, 5, new Random(42));
+
+    assertEquals(5, result.size());
+    assertEquals(5, ImmutableSet.copyOf(result).size());
+    assertTrue(places.containsAll(result));
+    assertEquals(Places.randomSample(places, 5, new Random(42)), result);
+  }
+
+  @Test
+  public void randomSample_morePlacesThanInList_keepsAllItems() {
+    Place place1 = createValidPlaceBuilderByName("name1").build();
+    Place place2 = createValidPlaceBuilderByName("name2").build();
+
+    ImmutableList<Place> result =
+        Places.randomSample(ImmutableList.of(place1, place2), 3, new Random(42));
+
+    assertEquals(ImmutableSet.of(place1, place2), ImmutableSet.copyOf(result));
+    assertEquals(2, result.size());
+  }
+
+  @Test
+  public void randomSample_shortList_eachPlaceEquallyLikely() {
+    assertEachPlaceEquallyLikelyToBeSampled(10);
+  }
+
+  @Test
+  public void randomSample_longList_eachPlaceEquallyLikely() {
+    assertEachPlaceEquallyLikelyToBeSampled(100);
+  }
+
   @Test
   public void scoreSort_sortedByScoringAlgorithm() {
     Place placeLowRating = createValidPlaceBuilderByName("name1").setRating(1).build();
@@ -47,14 +84,65 @@ public final class PlacesTest {
     ImmutableList<Place> placesList = ImmutableList.of(placeLowRating, placeHighRating);
     LatLng userLoaction = new LatLng(32.09, 34.78);
     PlacesScorer mockScorer = mock(PlacesScorerImpl.class);
-    when(mockScorer.getScores(placesList, userLoaction))
-        .thenReturn(ImmutableMap.of(placeLowRating, 0.5d, placeHighRating, 1d));
+    when(mockScorer.getScoresArray(placesList, userLoaction, ImmutableMap.of()))
+        .thenReturn(new double[] {0.5d, 1d});
 
     ImmutableList<Place> result = Places.scoreSort(placesList, userLoaction, mockScorer);
 
     assertEquals(ImmutableList.of(placeHighRating, placeLowRating), result);
   }
 
+  @Test
+  public void scoreSortTop_placesWithoutScores_returnsTopScoredPlaces() {
+    Place placeLowRating = createValidPlaceBuilderByName("name1").setRating(1).build();
+    Place placeMidRating = createValidPlaceBuilderByName("name2").setRating(2).build();
+    Place placeHighRating = createValidPlaceBuilderByName("name3").setRating(3).build();
+    ImmutableList<Place> placesList =
+        ImmutableList.of(placeLowRating, placeMidRating, placeHighRating);
+    LatLng userLoaction = new LatLng(32.09, 34.78);
+    PlacesScorer mockScorer = mock(PlacesScorerImpl.class);
+    // The scorer skipped the place with the lowest rating, which can't be in the top 1.
+    when(mockScorer.getTopScores(placesList, userLoaction, ImmutableMap.of(), 1))
+        .thenReturn(ImmutableMap.of(placeMidRating, 0.5d, placeHighRating, 1d));
+
+    ImmutableList<Place> result =
+        Places.scoreSortTop(placesList, userLoaction, mockScorer, ImmutableMap.of(), 1);
+
+    assertEquals(ImmutableList.of(placeHighRating), result);
+  }
+
+  @Test
+  public void scoreSortTop_equalScores_keepsOrderOfScoreSort() {
+    Place place1 = createValidPlaceBuilderByName("name1").build();
+    Place place2 = createValidPlaceBuilderByName("name2").build();
+    Place place3 = createValidPlaceBuilderByName("name3").build();
+    ImmutableList<Place> placesList = ImmutableList.of(place1, place2, place3);
+    LatLng userLoaction = new LatLng(32.09, 34.78);
+    PlacesScorer mockScorer = mock(PlacesScorerImpl.class);
+    when(mockScorer.getTopScores(placesList, userLoaction, ImmutableMap.of(), 2))
+        .thenReturn(ImmutableMap.of(place1, 0.5d, place2, 1d, place3, 1d));
+
+    ImmutableList<Place> result =
+        Places.scoreSortTop(placesList, userLoaction, mockScorer, ImmutableMap.of(), 2);
+
+    assertEquals(ImmutableList.of(place2, place3), result);
+  }
+
+  @Test
+  public void filter_randomPlaces_sameAsSortingBeforeFiltering() {
+    Random random = new Random(7);
+    for (int i = 0; i < 100; i++) {
+      ImmutableList<Place> places = PlaceFixtures.createPlaces(50, random);
+      for (boolean filterIfNoWebsite : new boolean[] {false, true}) {
+        for (boolean filterBranches : new boolean[] {false, true}) {
+          assertEquals(
+              PlaceFixtures.sortThenFilter(places, 3, filterIfNoWebsite, filterBranches),
+              Places.filter(places, 3, filterIfNoWebsite, filterBranches));
+        }
+      }
+    }
+  }
+
   @Test
   public void filter_noNeedToFilter_noFilter() {
     ImmutableList<Place> twoPlaces = ImmutableList.of(
@@ -212,6 +300,25 @@ public final class PlacesTest {
     assertEquals(result, ImmutableList.of(placeToKeep));
   }
 
+  // Samples 3 of the given number of places many times, and checks that each place was sampled
+  // about as many times as expected.
+  private static void assertEachPlaceEquallyLikelyToBeSampled(int numOfPlaces) {
+    ImmutableList<Place> places = PlaceFixtures.createPlaces(numOfPlaces, new Random(7));
+    Random random = new Random(42);
+    Map<Place, Integer> counts = new HashMap<>();
+    int numOfSamples = 1000 * numOfPlaces;
+
+    for (int i = 0; i < numOfSamples; i++) {
+      for (Place place : Places.randomSample(places, 3, random)) {
+        counts.merge(place, 1, Integer::sum);
+      }
+    }
+
+    for (Place place : places) {
+      assertEquals(3000, counts.getOrDefault(place, 0), 200);
+    }
+  }
+
   // Returns a Place builder that has valid values of all attributes.
   private static Place.Builder createValidPlaceBuilderByName(String name) {
     return Place.builder()
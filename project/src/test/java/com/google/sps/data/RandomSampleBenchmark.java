@@ -0,0 +1,72 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Compares choosing a few random places by shuffling the whole list with Places.randomSort with
+ * sampling them with Places.randomSample. Run it with the GC profiler to compare allocations too:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main RandomSampleBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomSampleBenchmark {
+
+    private static final int NUM_OF_SAMPLED_PLACES = 3;
+
+    @Param({"10", "100", "10000"})
+    public int numOfPlaces;
+
+    private ImmutableList<Place> places;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        places = PlaceFixtures.createPlaces(numOfPlaces, new Random(42));
+        random = new Random(42);
+    }
+
+    @Benchmark
+    public ImmutableList<Place> randomSort() {
+        return Places.randomSort(places).subList(0, Math.min(NUM_OF_SAMPLED_PLACES, numOfPlaces));
+    }
+
+    @Benchmark
+    public ImmutableList<Place> randomSample() {
+        return Places.randomSample(places, NUM_OF_SAMPLED_PLACES, random);
+    }
+}
@@ -0,0 +1,97 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.maps.model.LatLng;
+
+@RunWith(JUnit4.class)
+public final class RankingQualityReportTest {
+
+  private static final double DELTA = 0.0001;
+  private static final LatLng USER_LOCATION = new LatLng(32.08, 34.78);
+  // The places are about 1, 3 and 6 kilometers north of the user. The far place's rating is too
+  // low for it to reach the top once the near place is scored.
+  private static final Place NEAR_PLACE = createPlace("near", 0.01, 5);
+  private static final Place MIDDLE_PLACE = createPlace("middle", 0.03, 5);
+  private static final Place FAR_PLACE = createPlace("far", 0.05, 3);
+  private static final ImmutableList<Place> PLACES =
+      ImmutableList.of(NEAR_PLACE, MIDDLE_PLACE, FAR_PLACE);
+  private static final DurationEstimator ESTIMATOR = DurationEstimator.create(
+      DurationEstimator.Config.create(1 /* topK */, 30 /* speedKmh */, 1.3 /* detourFactor */),
+      ImmutableList.of());
+
+  @Test
+  public void create_durationsMatchDistances_topPlacePrefetched() {
+    RankingQualityReport report = RankingQualityReport.create(
+        ImmutableList.of(RankingQualityReport.RecordedQuery.create(
+            USER_LOCATION, PLACES, ImmutableMap.of("near", 300L, "middle", 900L, "far", 1500L))),
+        ESTIMATOR,
+        1 /* numOfResults */);
+
+    assertEquals(1, report.numOfQueries());
+    assertEquals(1, report.averagePrefetchedTopRate(), DELTA);
+    // Only the far place's duration isn't needed.
+    assertEquals(1.0 / 3, report.averageElementsSavedRate(), DELTA);
+  }
+
+  @Test
+  public void create_middlePlaceReachedByHighway_topPlaceNotPrefetched() {
+    RankingQualityReport report = RankingQualityReport.create(
+        ImmutableList.of(
+            RankingQualityReport.RecordedQuery.create(
+                USER_LOCATION, PLACES, ImmutableMap.of("near", 300L, "middle", 900L, "far", 1500L)),
+            // The middle place is the fastest to reach, so the top place is requested afterwards.
+            RankingQualityReport.RecordedQuery.create(
+                USER_LOCATION, PLACES, ImmutableMap.of("near", 1500L, "middle", 60L, "far", 60L))),
+        ESTIMATOR,
+        1 /* numOfResults */);
+
+    assertEquals(2, report.numOfQueries());
+    assertEquals(0.5, report.averagePrefetchedTopRate(), DELTA);
+    assertEquals(1.0 / 3, report.averageElementsSavedRate(), DELTA);
+  }
+
+  @Test
+  public void recordedQueryCreate_missingDuration_throwIllegalArgumentException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> RankingQualityReport.RecordedQuery.create(
+            USER_LOCATION, PLACES, ImmutableMap.of("near", 300L)));
+  }
+
+  private static Place createPlace(String placeId, double latOffset, float rating) {
+    return Place.builder()
+        .setName(placeId)
+        .setWebsiteUrl("website@google.com")
+        .setPhone("+97250-0000-000")
+        .setRating(rating)
+        .setPriceLevel(3)
+        .setLocation(new LatLng(USER_LOCATION.lat + latOffset, USER_LOCATION.lng))
+        .setGoogleUrl("googleurl.com")
+        .setPlaceId(placeId)
+        .setBusinessStatus(BusinessStatus.OPERATIONAL)
+        .setCuisines(ImmutableSet.of("sushi"))
+        .build();
+  }
+}
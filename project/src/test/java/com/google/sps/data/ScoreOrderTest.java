@@ -0,0 +1,73 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ScoreOrderTest {
+
+  @Test
+  public void sortDescending_distinctScores_indicesByDescendingScores() {
+    assertArrayEquals(
+        new int[] {2, 0, 3, 1}, ScoreOrder.sortDescending(new double[] {0.5, 0.1, 0.9, 0.3}));
+  }
+
+  @Test
+  public void sortDescending_equalScores_keepOrderOfIndices() {
+    assertArrayEquals(
+        new int[] {1, 4, 0, 2, 3},
+        ScoreOrder.sortDescending(new double[] {0.5, 0.7, 0.5, 0.5, 0.7}));
+  }
+
+  @Test
+  public void sortDescending_noScores_noIndices() {
+    assertArrayEquals(new int[0], ScoreOrder.sortDescending(new double[0]));
+  }
+
+  @Test
+  public void topDescending_scoresWithTies_sameAsPrefixOfSortDescending() {
+    Random random = new Random(7);
+    double[] scores = new double[1000];
+    for (int i = 0; i < scores.length; i++) {
+      // Few distinct scores, so that many of them are equal.
+      scores[i] = random.nextInt(20) / 20.0;
+    }
+    int[] sortedIndices = ScoreOrder.sortDescending(scores);
+
+    for (int numOfTopIndices : new int[] {1, 3, 50, 1000}) {
+      assertArrayEquals(
+          Arrays.copyOf(sortedIndices, numOfTopIndices),
+          ScoreOrder.topDescending(scores, numOfTopIndices));
+    }
+  }
+
+  @Test
+  public void topDescending_lessScoresThanRequested_allIndices() {
+    assertArrayEquals(
+        new int[] {1, 0}, ScoreOrder.topDescending(new double[] {0.2, 0.4}, 3));
+  }
+
+  @Test
+  public void topDescending_noIndicesRequested_noIndices() {
+    assertArrayEquals(new int[0], ScoreOrder.topDescending(new double[] {0.2, 0.4}, 0));
+  }
+}
@@ -0,0 +1,115 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.maps.model.LatLng;
+
+/**
+ * Compares scoring and sorting places through the map of scores returned by getScores, as
+ * Places.scoreSort used to, with the index-aligned array of scores returned by getScoresArray,
+ * and with selecting only the top places from the array, as Places.scoreSortTop does.
+ * The durations of all the places are prefetched, so the Distance Matrix API is never called.
+ * Run it with:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main ScoreSortBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreSortBenchmark {
+
+    private static final LatLng USER_LOCATION = new LatLng(32.08, 34.78);
+    private static final int NUM_OF_TOP_PLACES = 3;
+
+    @Param({"10", "100", "10000"})
+    public int numOfPlaces;
+
+    private ImmutableList<Place> places;
+    private ImmutableMap<String, Long> durations;
+    private PlacesScorer scorer;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        ImmutableList.Builder<Place> placesBuilder = ImmutableList.builder();
+        ImmutableMap.Builder<String, Long> durationsBuilder = ImmutableMap.builder();
+        for (int i = 0; i < numOfPlaces; i++) {
+            String placeId = "place" + i;
+            placesBuilder.add(Place.builder()
+                .setName(placeId)
+                .setWebsiteUrl("place.com")
+                .setPhone("+97250-0000-000")
+                .setRating(1 + 4 * random.nextFloat())
+                .setPriceLevel(2)
+                .setLocation(new LatLng(
+                    USER_LOCATION.lat + (random.nextDouble() - 0.5) * 0.2,
+                    USER_LOCATION.lng + (random.nextDouble() - 0.5) * 0.2))
+                .setGoogleUrl("google.com")
+                .setPlaceId(placeId)
+                .setBusinessStatus(BusinessStatus.OPERATIONAL)
+                .setCuisines(ImmutableSet.of("sushi", "hamburger"))
+                .build());
+            durationsBuilder.put(placeId, (long) random.nextInt(3600));
+        }
+        places = placesBuilder.build();
+        durations = durationsBuilder.build();
+        scorer = new PlacesScorerImpl(
+            GeoContext.getGeoApiContext(), DurationCache.disabled(), DurationEstimator.create());
+    }
+
+    @Benchmark
+    public List<Place> scoresMap() {
+        ImmutableMap<Place, Double> scores = scorer.getScores(places, USER_LOCATION, durations);
+        List<Place> sortedPlaces = new ArrayList<>(places);
+        Collections.sort(sortedPlaces, (p1, p2) -> scores.get(p2).compareTo(scores.get(p1)));
+        return sortedPlaces;
+    }
+
+    @Benchmark
+    public List<Place> scoresArray() {
+        return Places.scoreSort(places, USER_LOCATION, scorer, durations);
+    }
+
+    @Benchmark
+    public int[] scoresArrayTop() {
+        return ScoreOrder.topDescending(
+            scorer.getScoresArray(places, USER_LOCATION, durations), NUM_OF_TOP_PLACES);
+    }
+}
@@ -0,0 +1,125 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.maps.model.LatLng;
+
+/**
+ * Compares the number of Distance Matrix elements requested per query by the scoring paths of
+ * PlacesScorerImpl, on seeded synthetic queries whose driving durations are drawn at random.
+ * The Distance Matrix API is never called, so no API key is needed. Run it with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.mainClass=com.google.sps.data.ScoringElementsBenchmark \
+ *     -Dexec.classpathScope=test
+ * </pre>
+ */
+public final class ScoringElementsBenchmark {
+
+    private static final int[] NUMS_OF_PLACES = {10, 20, 60};
+    private static final int NUM_OF_QUERIES = 200;
+    private static final int NUM_OF_TOP_PLACES = 3;
+    private static final long SEED = 42;
+    private static final LatLng USER_LOCATION = new LatLng(32.08, 34.78);
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf(
+            "%8s %14s %14s %14s%n", "places", "exact", "top-" + NUM_OF_TOP_PLACES, "top matches");
+        for (int numOfPlaces : NUMS_OF_PLACES) {
+            Random random = new Random(SEED);
+            long exactElements = 0;
+            long topElements = 0;
+            int topMatches = 0;
+            for (int query = 0; query < NUM_OF_QUERIES; query++) {
+                Map<String, Long> durations = new HashMap<>();
+                ImmutableList<Place> places = createPlaces(numOfPlaces, random, durations);
+
+                PlacesScorerImpl exactScorer = createScorer(DurationEstimator.exact(), durations);
+                ImmutableList<Place> exactTop = Places.scoreSort(
+                    places, USER_LOCATION, exactScorer, ImmutableMap.of())
+                    .subList(0, NUM_OF_TOP_PLACES);
+                exactElements += exactScorer.stats().distanceMatrixElements();
+
+                PlacesScorerImpl topScorer = createScorer(DurationEstimator.create(), durations);
+                ImmutableList<Place> top = Places.scoreSortTop(
+                    places, USER_LOCATION, topScorer, ImmutableMap.of(), NUM_OF_TOP_PLACES);
+                topElements += topScorer.stats().distanceMatrixElements();
+                if (top.equals(exactTop)) {
+                    topMatches++;
+                }
+            }
+            System.out.printf(
+                "%8d %14.2f %14.2f %13.1f%%%n",
+                numOfPlaces,
+                (double) exactElements / NUM_OF_QUERIES,
+                (double) topElements / NUM_OF_QUERIES,
+                100.0 * topMatches / NUM_OF_QUERIES);
+        }
+    }
+
+    // Creates places around the user with random ratings, and draws their driving durations.
+    private static ImmutableList<Place> createPlaces(
+            int numOfPlaces, Random random, Map<String, Long> durations) {
+        ImmutableList.Builder<Place> places = ImmutableList.builder();
+        for (int i = 0; i < numOfPlaces; i++) {
+            String placeId = "place" + i;
+            places.add(Place.builder()
+                .setName(placeId)
+                .setWebsiteUrl("place.com")
+                .setPhone("+97250-0000-000")
+                .setRating(2 + 3 * random.nextFloat())
+                .setPriceLevel(2)
+                .setLocation(new LatLng(
+                    USER_LOCATION.lat + (random.nextDouble() - 0.5) * 0.2,
+                    USER_LOCATION.lng + (random.nextDouble() - 0.5) * 0.2))
+                .setGoogleUrl("google.com")
+                .setPlaceId(placeId)
+                .setBusinessStatus(BusinessStatus.OPERATIONAL)
+                .setCuisines(ImmutableSet.of("sushi"))
+                .build());
+            durations.put(placeId, 120 + (long) random.nextInt(2400));
+        }
+        return places.build();
+    }
+
+    // Creates a scorer whose Distance Matrix requests are answered from the given durations.
+    private static PlacesScorerImpl createScorer(
+            DurationEstimator durationEstimator, Map<String, Long> durations) throws Exception {
+        PlacesScorerImpl scorer = spy(new PlacesScorerImpl(
+            GeoContext.getGeoApiContext(),
+            MoreExecutors.newDirectExecutorService(),
+            DurationCache.disabled(),
+            durationEstimator));
+        doAnswer(invocation -> invocation.<ImmutableMap<String, LatLng>>getArgument(0)
+                .keySet().stream()
+                .collect(ImmutableMap.toImmutableMap(placeId -> placeId, durations::get)))
+            .when(scorer)
+            .requestDurations(any(), any(LatLng.class));
+        return scorer;
+    }
+
+    private ScoringElementsBenchmark() { }
+}
@@ -0,0 +1,104 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.common.collect.ImmutableList;
+import com.google.maps.model.LatLng;
+
+@RunWith(JUnit4.class)
+public final class SearchResultCacheTest {
+
+  private static final Duration TTL = Duration.ofMinutes(10);
+  private static final double CELL_SIZE_M = 500;
+  private static final int RADIUS = 5000;
+  private static final ImmutableList<PlaceCandidate> PLACES =
+      ImmutableList.of(
+          PlaceCandidate.create("place1", 4, BusinessStatus.OPERATIONAL, Optional.empty()),
+          PlaceCandidate.create(
+              "place2", 3, BusinessStatus.OPERATIONAL, Optional.of(new LatLng(32.08, 34.78))));
+
+  private FakeTicker ticker;
+  private SearchResultCache cache;
+
+  @Before
+  public void setUp() {
+    ticker = new FakeTicker();
+    cache = new SearchResultCache(100 /* maxNumOfSearches */, TTL, CELL_SIZE_M, ticker);
+  }
+
+  @Test
+  public void getIfPresent_nearbyLocation_returnsCachedPlaces() {
+    cache.put(createPreferencesBuilder().build(), "sushi", RADIUS, PLACES);
+
+    assertEquals(
+        Optional.of(PLACES),
+        cache.getIfPresent(
+            createPreferencesBuilder().setLocation(new LatLng(32.0803, 34.7803)).build(),
+            "sushi",
+            RADIUS));
+    assertEquals(1.0, cache.stats().hitRate(), 0);
+  }
+
+  @Test
+  public void getIfPresent_differentSearchParameters_miss() {
+    UserPreferences preferences = createPreferencesBuilder().build();
+    cache.put(preferences, "sushi", RADIUS, PLACES);
+
+    assertFalse(cache.getIfPresent(preferences, "pizza", RADIUS).isPresent());
+    assertFalse(cache.getIfPresent(preferences, "sushi", 2 * RADIUS).isPresent());
+    assertFalse(
+        cache.getIfPresent(createPreferencesBuilder().setOpenNow(false).build(), "sushi", RADIUS)
+            .isPresent());
+    assertFalse(
+        cache.getIfPresent(createPreferencesBuilder().setMaxPriceLevel(4).build(), "sushi", RADIUS)
+            .isPresent());
+    assertFalse(
+        cache.getIfPresent(
+            createPreferencesBuilder().setLocation(new LatLng(32.10, 34.78)).build(),
+            "sushi",
+            RADIUS)
+            .isPresent());
+    assertEquals(0.0, cache.stats().hitRate(), 0);
+  }
+
+  @Test
+  public void getIfPresent_afterTtl_miss() {
+    UserPreferences preferences = createPreferencesBuilder().build();
+    cache.put(preferences, "sushi", RADIUS, PLACES);
+
+    ticker.advance(TTL);
+
+    assertFalse(cache.getIfPresent(preferences, "sushi", RADIUS).isPresent());
+  }
+
+  // Returns a UserPreferences builder that has valid values of all attributes.
+  private static UserPreferences.Builder createPreferencesBuilder() {
+    return UserPreferences.builder()
+        .setMinRating(4)
+        .setMaxPriceLevel(2)
+        .setLocation(new LatLng(32.0802, 34.7802))
+        .setCuisines(ImmutableList.of("sushi"))
+        .setOpenNow(true);
+  }
+}
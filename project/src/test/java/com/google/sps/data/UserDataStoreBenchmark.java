@@ -0,0 +1,92 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+
+/**
+ * Measures the rate at which the in-memory store and the log store take feedbacks of a thousand
+ * users, each of three places out of a thousand. Run it with:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main UserDataStoreBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDataStoreBenchmark {
+
+    private static final int NUM_OF_USERS = 1000;
+    private static final int NUM_OF_PLACES = 1000;
+
+    @Param({"memory", "log"})
+    public String type;
+
+    private Path dir;
+    private UserDataStore dataStore;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("user-data-store");
+        dataStore = type.equals("log") ? LogUserDataStore.open(dir) : new InMemoryUserDataStore();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (dataStore instanceof LogUserDataStore) {
+            ((LogUserDataStore) dataStore).close();
+        }
+        MoreFiles.deleteRecursively(dir, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    @Benchmark
+    public void updateUserFeedback() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String chosenPlace = "place" + random.nextInt(NUM_OF_PLACES);
+        dataStore.updateUserFeedback(UserFeedback.builder()
+            .setUserId("user" + random.nextInt(NUM_OF_USERS))
+            .setRecommendedPlaces(ImmutableList.of(
+                chosenPlace,
+                "place" + random.nextInt(NUM_OF_PLACES),
+                "place" + random.nextInt(NUM_OF_PLACES)))
+            .setChosenPlace(chosenPlace)
+            .setUserTriedAgain(false)
+            .build());
+    }
+}
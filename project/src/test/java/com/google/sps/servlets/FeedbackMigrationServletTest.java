@@ -0,0 +1,82 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import com.google.appengine.api.users.UserService;
+import com.google.sps.data.DatastoreUserDataStore;
+
+@RunWith(JUnit4.class)
+public class FeedbackMigrationServletTest {
+
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private UserService mockUserService;
+  private DatastoreUserDataStore mockDataStore;
+  private FeedbackMigrationServlet servlet;
+
+  @Before
+  public void setUp() {
+    request = mock(HttpServletRequest.class);
+    response = mock(HttpServletResponse.class);
+    mockUserService = mock(UserService.class);
+    mockDataStore = mock(DatastoreUserDataStore.class);
+    servlet = new FeedbackMigrationServlet();
+    servlet.init(mockUserService, mockDataStore);
+  }
+
+  @Test
+  public void doPost_notAdmin_forbidden() throws Exception {
+    when(mockUserService.isUserLoggedIn()).thenReturn(true);
+    when(mockUserService.isUserAdmin()).thenReturn(false);
+
+    servlet.doPost(request, response);
+
+    verify(mockDataStore, never()).migrateRecommendationsToFeedback(any(), anyInt());
+    verify(response).sendError(eq(HttpServletResponse.SC_FORBIDDEN), any(String.class));
+  }
+
+  @Test
+  public void doPost_adminLastPage_noCursorReturned() throws Exception {
+    when(mockUserService.isUserLoggedIn()).thenReturn(true);
+    when(mockUserService.isUserAdmin()).thenReturn(true);
+    when(mockDataStore.migrateRecommendationsToFeedback(
+        Optional.empty(), FeedbackMigrationServlet.PAGE_SIZE))
+        .thenReturn(Optional.empty());
+    StringWriter responseWriter = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+
+    servlet.doPost(request, response);
+
+    assertEquals("{}", responseWriter.toString());
+  }
+}
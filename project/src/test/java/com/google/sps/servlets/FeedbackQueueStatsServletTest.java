@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import com.google.appengine.api.users.UserService;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.data.FeedbackQueue;
+
+@RunWith(JUnit4.class)
+public class FeedbackQueueStatsServletTest {
+
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private UserService mockUserService;
+  private FeedbackQueue mockFeedbackQueue;
+  private FeedbackQueueStatsServlet servlet;
+
+  @Before
+  public void setUp() {
+    request = mock(HttpServletRequest.class);
+    response = mock(HttpServletResponse.class);
+    mockUserService = mock(UserService.class);
+    mockFeedbackQueue = mock(FeedbackQueue.class);
+    servlet = new FeedbackQueueStatsServlet();
+    servlet.init(mockUserService, mockFeedbackQueue);
+  }
+
+  @Test
+  public void doGet_notLoggedIn_forbidden() throws Exception {
+    when(mockUserService.isUserLoggedIn()).thenReturn(false);
+
+    servlet.doGet(request, response);
+
+    verify(mockFeedbackQueue, never()).stats();
+    verify(response).sendError(eq(HttpServletResponse.SC_FORBIDDEN), any(String.class));
+  }
+
+  @Test
+  public void doGet_admin_statsReturned() throws Exception {
+    when(mockUserService.isUserLoggedIn()).thenReturn(true);
+    when(mockUserService.isUserAdmin()).thenReturn(true);
+    when(mockFeedbackQueue.stats()).thenReturn(FeedbackQueue.Stats.create(
+        FeedbackQueue.Durability.WRITE_BEHIND, 7, 3, 1, 20, 5, 0, 12, 40));
+    StringWriter responseWriter = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+
+    servlet.doGet(request, response);
+
+    JsonObject stats = JsonParser.parseString(responseWriter.toString()).getAsJsonObject();
+    assertEquals("WRITE_BEHIND", stats.get("durability").getAsString());
+    assertEquals(7, stats.get("queueDepth").getAsInt());
+    assertEquals(5, stats.get("numOfSpilledFeedbacks").getAsInt());
+    assertEquals(12, stats.get("lastFlushLatencyMillis").getAsInt());
+  }
+}
@@ -24,7 +24,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableList;
-import com.google.sps.data.DataAccessor;
+import com.google.sps.data.FeedbackQueue;
 import com.google.sps.data.UserFeedback;
 import com.google.sps.data.UserVerifier;
 import java.util.Optional;
@@ -44,15 +44,15 @@ public class FeedbackServletTest {
   private static final String ID_TOKEN = "abcde";
   private static final String USER_ID = "12345";
   private static UserVerifier mockUserVerifier;
-  private static DataAccessor mockDataAccessor;
+  private static FeedbackQueue mockFeedbackQueue;
   private FeedbackServlet servlet;
 
   @Before
   public void setUp() throws Exception {
     mockUserVerifier = mock(UserVerifier.class);
-    mockDataAccessor = mock(DataAccessor.class);
+    mockFeedbackQueue = mock(FeedbackQueue.class);
     servlet = new FeedbackServlet();
-    servlet.init(mockUserVerifier, mockDataAccessor);
+    servlet.init(mockUserVerifier, mockFeedbackQueue);
   }
 
   @Test
@@ -67,7 +67,7 @@ public class FeedbackServletTest {
 
     // The parameters here must match those that are mocked in the request.
     // We can't compare instances of UserFeedback, because of the "feedbackTimeInMillis" attribute.
-    verify(mockDataAccessor).updateUserFeedback(argThat(
+    verify(mockFeedbackQueue).submit(argThat(
         matchesUserFeedback(USER_ID, ImmutableList.of("place1", "place2", "place3"),
             Optional.of("place1"), false /* triedAgain */)
     ));
@@ -85,7 +85,7 @@ public class FeedbackServletTest {
 
     // The parameters here must match those that are mocked in the request.
     // We can't compare instances of UserFeedback, because of the "feedbackTimeInMillis" attribute.
-    verify(mockDataAccessor).updateUserFeedback(argThat(
+    verify(mockFeedbackQueue).submit(argThat(
         matchesUserFeedback(USER_ID, ImmutableList.of("place1", "place2", "place3"),
             Optional.empty(), true /* triedAgain */)
     ));
@@ -98,7 +98,7 @@ public class FeedbackServletTest {
 
     servlet.doPost(REQUEST, RESPONSE);
 
-    verify(mockDataAccessor, never()).updateUserFeedback(any(UserFeedback.class));
+    verify(mockFeedbackQueue, never()).submit(any(UserFeedback.class));
     verify(RESPONSE)
         .sendError(eq(HttpServletResponse.SC_BAD_REQUEST), any(String.class));
   }
@@ -110,7 +110,7 @@ public class FeedbackServletTest {
 
     servlet.doPost(REQUEST, RESPONSE);
 
-    verify(mockDataAccessor, never()).updateUserFeedback(any(UserFeedback.class));
+    verify(mockFeedbackQueue, never()).submit(any(UserFeedback.class));
     verify(RESPONSE, atLeastOnce())
         .sendError(eq(HttpServletResponse.SC_NOT_FOUND), any(String.class));
   }
@@ -126,7 +126,7 @@ public class FeedbackServletTest {
 
     servlet.doPost(REQUEST, RESPONSE);
 
-    verify(mockDataAccessor, never()).updateUserFeedback(any(UserFeedback.class));
+    verify(mockFeedbackQueue, never()).submit(any(UserFeedback.class));
     verify(RESPONSE, atLeastOnce())
         .sendError(eq(HttpServletResponse.SC_BAD_REQUEST), any(String.class));
   }
@@ -16,6 +16,7 @@ package com.google.sps.servlets;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
@@ -32,11 +33,15 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import com.google.sps.data.PlacesFetcher;
 import com.google.sps.data.UserPreferences;
 import com.google.sps.data.FetcherException;
 import com.google.sps.data.PlacesScorer;
 import com.google.sps.data.Place;
+import com.google.sps.data.PlaceCandidate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -77,6 +82,11 @@ public final class QueryServletTest {
     servlet.init(FETCHER, SCORER, USER_VERIFIER, DATA_ACCESSOR);
     when(RESPONSE.getWriter()).thenReturn(responsePrintWriter);
     initializeRequestParameters();
+    when(SCORER.prefetchDurations(any(), any(LatLng.class)))
+        .thenReturn(CompletableFuture.completedFuture(ImmutableMap.of()));
+    // Unless a test says otherwise, every place the scorer gets has a score.
+    when(SCORER.getTopScores(any(), any(LatLng.class), any(), anyInt()))
+        .thenAnswer(invocation -> createScoreMap(invocation.getArgument(0)));
     clearInvocations(DATA_ACCESSOR);
     clearInvocations(FETCHER);
   }
@@ -85,9 +95,9 @@ public final class QueryServletTest {
   public void postRequest_fetchedMoreThanMaxNumPlaces_respondMaxNumPlaces() throws Exception {
     ImmutableList<Place> placesListWithMoreThanMaxNum =
         createPlacesListBySize(QueryServlet.MAX_NUM_PLACES_TO_RECOMMEND + 1);
-    when(FETCHER.fetch(any(UserPreferences.class)))
-        .thenReturn(placesListWithMoreThanMaxNum);
-    when(SCORER.getScores(eq(placesListWithMoreThanMaxNum), any(LatLng.class)))
+    stubFetchedPlaces(placesListWithMoreThanMaxNum);
+    when(SCORER.getTopScores(
+        eq(placesListWithMoreThanMaxNum), any(LatLng.class), any(), anyInt()))
         .thenReturn(createScoreMap(placesListWithMoreThanMaxNum));
 
     servlet.doPost(REQUEST, RESPONSE);
@@ -99,9 +109,9 @@ public final class QueryServletTest {
   public void postRequest_fetchedLessThanMaxNumPlaces_respondAllFetchedPlaces() throws Exception {
     int numOfFetchedPlaces = QueryServlet.MAX_NUM_PLACES_TO_RECOMMEND - 1;
     ImmutableList<Place> placesListWithLessThanMaxNum = createPlacesListBySize(numOfFetchedPlaces);
-    when(FETCHER.fetch(any(UserPreferences.class)))
-        .thenReturn(placesListWithLessThanMaxNum);
-    when(SCORER.getScores(eq(placesListWithLessThanMaxNum), any(LatLng.class)))
+    stubFetchedPlaces(placesListWithLessThanMaxNum);
+    when(SCORER.getTopScores(
+        eq(placesListWithLessThanMaxNum), any(LatLng.class), any(), anyInt()))
         .thenReturn(createScoreMap(placesListWithLessThanMaxNum));
 
     servlet.doPost(REQUEST, RESPONSE);
@@ -126,9 +136,9 @@ public final class QueryServletTest {
         ImmutableList.of(validPlace, lowRating, noWebsite, validPlace2);
     ImmutableList<Place> filteredPlaces =
         ImmutableList.of(validPlace, lowRating, noWebsite);
-    when(FETCHER.fetch(any(UserPreferences.class)))
-        .thenReturn(places);
-    when(SCORER.getScores(eq(filteredPlaces), any(LatLng.class)))
+    stubFetchedPlaces(places);
+    when(SCORER.getTopScores(
+        eq(filteredPlaces), any(LatLng.class), any(), anyInt()))
         .thenReturn(createScoreMap(filteredPlaces));
 
     servlet.doPost(REQUEST, RESPONSE);
@@ -145,7 +155,8 @@ public final class QueryServletTest {
 
   @Test
   public void postRequest_fetcherException_forwardException() throws Exception {
-    when(FETCHER.fetch(any(UserPreferences.class))).thenThrow(FetcherException.class);
+    when(FETCHER.fetch(any(UserPreferences.class), any(), anyInt(), anyInt(), any()))
+        .thenThrow(FetcherException.class);
 
     servlet.doPost(REQUEST, RESPONSE);
 
@@ -174,26 +185,57 @@ public final class QueryServletTest {
 
     servlet.doPost(REQUEST, RESPONSE);
 
-    verify(FETCHER).fetch(expectedUserPrefs);
+    verify(FETCHER).fetch(
+        eq(expectedUserPrefs),
+        any(),
+        eq(QueryServlet.MAX_NUM_PLACES_TO_RECOMMEND),
+        eq(QueryServlet.FETCH_SAFETY_MARGIN),
+        any());
   }
 
   @Test
   // This test checks that the PlacesScorer is called with the expected parameters
   public void postRequest_placesAndUserLocationForwadedToScorer() throws Exception {
     ImmutableList<Place> places = createPlacesListBySize(1);
-    when(FETCHER.fetch(any(UserPreferences.class))).thenReturn(places);
+    stubFetchedPlaces(places);
     when(REQUEST.getParameter("location")).thenReturn("00.00000000,00.00000000");
 
     servlet.doPost(REQUEST, RESPONSE);
 
-    verify(SCORER).getScores(places, new LatLng(00, 00));
+    verify(SCORER).getTopScores(
+        eq(places),
+        eq(new LatLng(00, 00)),
+        any(),
+        eq(QueryServlet.MAX_NUM_PLACES_TO_RECOMMEND));
+  }
+
+  @Test
+  // This test checks that the durations which are calculated while the places' details are fetched
+  // are forwarded to the PlacesScorer
+  public void postRequest_durationsPrefetchedDuringFetch_durationsForwardedToScorer()
+      throws Exception {
+    ImmutableList<Place> places = createPlacesListBySize(1);
+    ImmutableList<PlaceCandidate> candidates = ImmutableList.of(PlaceCandidate.create(
+        "placeId", 4, BusinessStatus.OPERATIONAL, Optional.of(new LatLng(35.35, 30.30))));
+    when(FETCHER.fetch(any(UserPreferences.class), any(), anyInt(), anyInt(), any()))
+        .thenAnswer(invocation -> {
+          invocation.<Consumer<ImmutableList<PlaceCandidate>>>getArgument(4).accept(candidates);
+          return places;
+        });
+    when(SCORER.prefetchDurations(eq(candidates), any(LatLng.class)))
+        .thenReturn(CompletableFuture.completedFuture(ImmutableMap.of("placeId", 600L)));
+
+    servlet.doPost(REQUEST, RESPONSE);
+
+    verify(SCORER).getTopScores(
+        eq(places), any(LatLng.class), eq(ImmutableMap.of("placeId", 600L)), anyInt());
   }
 
   @Test
   // This test checks that storeUserPreferences is called with the expected parameters
   // when the servlet gets a valid ID token
   public void postRequest_validIdToken_userIdAndPreferencesForwardedForStoring() throws Exception {
-    when(FETCHER.fetch(any(UserPreferences.class))).thenReturn(ImmutableList.of());
+    stubFetchedPlaces(ImmutableList.of());
     when(USER_VERIFIER.getUserIdByToken(VALID_ID_TOKEN)).thenReturn(Optional.of("userId"));
     UserPreferences expectedUserPrefs = createUserPreferences();
 
@@ -207,7 +249,7 @@ public final class QueryServletTest {
   // when the servlet gets an invalid ID token
   public void postRequest_invalidIdToken_userPreferencesAreNotStored() throws Exception {
     when(REQUEST.getParameter("idToken")).thenReturn("");
-    when(FETCHER.fetch(any(UserPreferences.class))).thenReturn(ImmutableList.of());
+    stubFetchedPlaces(ImmutableList.of());
     when(USER_VERIFIER.getUserIdByToken("")).thenReturn(Optional.empty());
 
     servlet.doPost(REQUEST, RESPONSE);
@@ -216,6 +258,13 @@ public final class QueryServletTest {
         .storeUserPreferences(any(String.class), any(UserPreferences.class));
   }
 
+  // Makes the fetcher return the given places, after applying the filter that it is given.
+  private static void stubFetchedPlaces(ImmutableList<Place> places) throws Exception {
+    when(FETCHER.fetch(any(UserPreferences.class), any(), anyInt(), anyInt(), any()))
+        .thenAnswer(invocation ->
+            invocation.<UnaryOperator<ImmutableList<Place>>>getArgument(1).apply(places));
+  }
+
   // Returns an immutable list that has the required number of Place elements. All elements are
   // identical except for their name, which is serialized - '0', '1', '2', etc.
   private static ImmutableList<Place> createPlacesListBySize(int numOfPlaces) {
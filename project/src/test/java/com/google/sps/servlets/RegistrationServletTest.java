@@ -53,11 +53,11 @@ public class RegistrationServletTest {
   public void doPost_validToken_registersUser() throws Exception {
     when(REQUEST.getParameter("idToken")).thenReturn(ID_TOKEN);
     when(mockUserVerifier.getUserIdByToken(ID_TOKEN)).thenReturn(Optional.of(USER_ID));
-    when(mockDataAccessor.isRegistered(USER_ID)).thenReturn(false);
+    when(mockDataAccessor.registerUserIfAbsent(USER_ID)).thenReturn(true);
 
     servlet.doPost(REQUEST, RESPONSE);
 
-    verify(mockDataAccessor).registerUser(USER_ID);
+    verify(mockDataAccessor).registerUserIfAbsent(USER_ID);
   }
 
   @Test
@@ -66,17 +66,19 @@ public class RegistrationServletTest {
 
     servlet.doPost(REQUEST, RESPONSE);
 
-    verify(mockDataAccessor, never()).registerUser(any(String.class));
+    verify(mockDataAccessor, never()).registerUserIfAbsent(any(String.class));
   }
 
   @Test
   public void doPost_validTokenAlreadyRegisteredUser_doesntRegister() throws Exception {
     when(REQUEST.getParameter("idToken")).thenReturn(ID_TOKEN);
     when(mockUserVerifier.getUserIdByToken(ID_TOKEN)).thenReturn(Optional.of(USER_ID));
-    when(mockDataAccessor.isRegistered(USER_ID)).thenReturn(true);
+    when(mockDataAccessor.registerUserIfAbsent(USER_ID)).thenReturn(false);
 
     servlet.doPost(REQUEST, RESPONSE);
 
+    // Registering an already registered user is left to the data accessor, in one call.
+    verify(mockDataAccessor).registerUserIfAbsent(USER_ID);
     verify(mockDataAccessor, never()).registerUser(USER_ID);
   }
 }